@@ -102,6 +102,11 @@ public class Cursor {
     }
 
     public boolean isScopeInPath(Tree scope) {
-        return (tree != null && tree.getId().equals(scope.getId())) || getPathAsStream().anyMatch(p -> p.getId().equals(scope.getId()));
+        for (Cursor c = this; c != null; c = c.parent) {
+            if (c.tree != null && scope.isScope(c.tree)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
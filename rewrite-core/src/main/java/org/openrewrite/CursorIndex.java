@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.util.UUID;
+
+/**
+ * The cursor of every element of a tree by its id, built with a single traversal so that finding an element by id
+ * and asking whether it is inside another element don't each need a traversal of their own.
+ * <p>
+ * The cursors are kept in an open-addressed table keyed by the {@link Tree#getCompactId() compact id} of their
+ * element, so that neither the index nor a lookup boxes an id. Elements whose compact ids happen to be the same are
+ * told apart by their full ids.
+ * <p>
+ * Should more than one element of the tree have the same id, the cursor of the first one visited is kept.
+ */
+public class CursorIndex {
+    private final long[] compactIds;
+    private final Cursor[] cursors;
+    private final int size;
+
+    private CursorIndex(long[] compactIds, Cursor[] cursors, int size) {
+        this.compactIds = compactIds;
+        this.cursors = cursors;
+        this.size = size;
+    }
+
+    @Nullable
+    public Cursor cursor(UUID id) {
+        return cursors[slot(compactIds, cursors, id.getLeastSignificantBits(), id)];
+    }
+
+    /**
+     * @param tree An element of the tree, or another element with the same id.
+     * @return The cursor of the element of the tree, or null if the tree has no element with this id.
+     */
+    @Nullable
+    public Cursor cursor(Tree tree) {
+        return cursors[slot(compactIds, cursors, tree.getCompactId(), tree.getId())];
+    }
+
+    public boolean contains(Tree tree) {
+        return cursor(tree) != null;
+    }
+
+    /**
+     * @param tree  An element of the tree.
+     * @param scope Another element of the tree.
+     * @return true if the element is the scope or is inside it.
+     */
+    public boolean isInScope(Tree tree, Tree scope) {
+        Cursor cursor = cursor(tree);
+        return cursor != null && cursor.isScopeInPath(scope);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The slot of the table that holds the cursor of the element with this id, or else the empty slot at
+     * which the search for it ended.
+     */
+    private static int slot(long[] compactIds, Cursor[] cursors, long compactId, UUID id) {
+        int mask = cursors.length - 1;
+        int i = (int) ((compactId ^ (compactId >>> 32)) * 0x9E3779B97F4A7C15L >>> 32) & mask;
+        for (; cursors[i] != null; i = (i + 1) & mask) {
+            if (compactIds[i] == compactId && id.equals(cursors[i].getTree().getId())) {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Filled by a cursored visitor of the language of the tree, which adds its cursor for every element it visits.
+     */
+    public static class Builder {
+        private long[] compactIds = new long[64];
+        private Cursor[] cursors = new Cursor[64];
+        private int size;
+
+        public Builder add(Cursor cursor) {
+            Tree tree = cursor.getTree();
+            int i = slot(compactIds, cursors, tree.getCompactId(), tree.getId());
+            if (cursors[i] == null) {
+                compactIds[i] = tree.getCompactId();
+                cursors[i] = cursor;
+                if (++size * 2 > cursors.length) {
+                    grow();
+                }
+            }
+            return this;
+        }
+
+        private void grow() {
+            long[] oldCompactIds = compactIds;
+            Cursor[] oldCursors = cursors;
+            compactIds = new long[oldCursors.length * 2];
+            cursors = new Cursor[oldCursors.length * 2];
+            for (int j = 0; j < oldCursors.length; j++) {
+                Cursor cursor = oldCursors[j];
+                if (cursor != null) {
+                    int i = slot(compactIds, cursors, oldCompactIds[j], cursor.getTree().getId());
+                    compactIds[i] = oldCompactIds[j];
+                    cursors[i] = cursor;
+                }
+            }
+        }
+
+        public CursorIndex build() {
+            return new CursorIndex(compactIds, cursors, size);
+        }
+    }
+}
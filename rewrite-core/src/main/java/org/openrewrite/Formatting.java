@@ -31,9 +31,6 @@ import java.util.Map;
 @JsonIdentityInfo(generator = ObjectIdGenerators.IntSequenceGenerator.class, property = "@ref")
 @Getter
 public class Formatting implements Serializable {
-    // suffixes are uncommon, so we'll treat them as a secondary index
-    private static final Map<String, Map<String, Formatting>> flyweights = HashObjObjMaps.newMutableMap();
-
     public static Formatting EMPTY = new Formatting("", "") {
         @Override
         public String toString() {
@@ -41,7 +38,11 @@ public class Formatting implements Serializable {
         }
     };
 
+    /**
+     * Null for a {@link SourcePrefix}, so only ever read through {@link #getPrefix()}.
+     */
     private final String prefix;
+
     private final String suffix;
 
     private Formatting(String prefix, String suffix) {
@@ -55,28 +56,48 @@ public class Formatting implements Serializable {
 
     @JsonCreator
     public static Formatting format(@JsonProperty("prefix") String prefix, @JsonProperty("suffix") String suffix) {
-        synchronized (flyweights) {
-            if (prefix.isEmpty() && suffix.isEmpty()) {
-                return EMPTY;
-            }
+        if (prefix.isEmpty() && suffix.isEmpty()) {
+            return EMPTY;
+        }
+        return Flyweights.current().format(prefix, suffix);
+    }
+
+    public static Formatting format(String source, int prefixStart, int prefixEnd) {
+        return format(source, prefixStart, prefixEnd, "");
+    }
 
-            return flyweights
-                    .computeIfAbsent(prefix, p -> HashObjObjMaps.newMutableMap())
-                    .computeIfAbsent(suffix, s -> new Formatting(prefix, s));
+    /**
+     * Formatting whose prefix is the range of the source that it was parsed from. A prefix that is only whitespace
+     * is shared with every other use of the same whitespace. A prefix with comments in it (Javadoc in particular)
+     * is rarely shared, so rather than being copied out of the source, it refers to the source for as long as it
+     * isn't changed.
+     *
+     * @param source      The source being parsed.
+     * @param prefixStart The offset of the first character of the prefix in the source.
+     * @param prefixEnd   The offset just past the last character of the prefix in the source.
+     * @param suffix      The suffix.
+     * @return Formatting with this prefix and suffix.
+     */
+    public static Formatting format(String source, int prefixStart, int prefixEnd, String suffix) {
+        for (int i = prefixStart; i < prefixEnd; i++) {
+            if (!Character.isWhitespace(source.charAt(i))) {
+                return new SourcePrefix(source, prefixStart, prefixEnd, suffix);
+            }
         }
+        return format(source.substring(prefixStart, prefixEnd), suffix);
     }
 
     public Formatting withPrefix(String prefix) {
-        return format(prefix, suffix);
+        return format(prefix, getSuffix());
     }
 
     public Formatting withSuffix(String suffix) {
-        return format(prefix, suffix);
+        return format(getPrefix(), suffix);
     }
 
     @JsonIgnore
     public int getIndent() {
-        return getIndent(prefix);
+        return getIndent(getPrefix());
     }
 
     public static int getIndent(String formatting) {
@@ -130,4 +151,107 @@ public class Formatting implements Serializable {
     public static <T extends Tree> T stripPrefix(@Nullable T t) {
         return t == null ? null : t.withPrefix("");
     }
+
+    /**
+     * A prefix that is a range of the retained source it was parsed from.
+     */
+    private static class SourcePrefix extends Formatting {
+        private final String source;
+        private final int prefixStart;
+        private final int prefixEnd;
+
+        @Nullable
+        private transient volatile String prefixCopy;
+
+        private SourcePrefix(String source, int prefixStart, int prefixEnd, String suffix) {
+            super(null, suffix);
+            this.source = source;
+            this.prefixStart = prefixStart;
+            this.prefixEnd = prefixEnd;
+        }
+
+        @Override
+        public String getPrefix() {
+            String p = prefixCopy;
+            if (p == null) {
+                // racing threads each copy the same range, and whichever copy is kept is as good as the other
+                prefixCopy = p = source.substring(prefixStart, prefixEnd);
+            }
+            return p;
+        }
+
+        @Override
+        public Formatting withSuffix(String suffix) {
+            return suffix.equals(getSuffix()) ? this : new SourcePrefix(source, prefixStart, prefixEnd, suffix);
+        }
+
+        @Override
+        public String toString() {
+            return "Formatting{prefix=" + getPrefix() + ", suffix=" + getSuffix() + "}";
+        }
+
+        /**
+         * Serialize only the prefix, not the whole source it is a range of.
+         */
+        private Object writeReplace() {
+            return new Formatting(getPrefix(), getSuffix());
+        }
+    }
+
+    /**
+     * The table of distinct formatting instances. A process-wide table is used unless another table has been bound
+     * to the current thread, which allows a long-lived process to scope formatting to a unit of work (e.g. one
+     * repository) and discard it afterwards.
+     */
+    public static class Flyweights {
+        private static final Flyweights GLOBAL = new Flyweights();
+        private static final ThreadLocal<Flyweights> current = new ThreadLocal<>();
+
+        // suffixes are uncommon, so we'll treat them as a secondary index
+        private final Map<String, Map<String, Formatting>> flyweights = HashObjObjMaps.newMutableMap();
+
+        public static Flyweights global() {
+            return GLOBAL;
+        }
+
+        public static Flyweights current() {
+            Flyweights flyweights = current.get();
+            return flyweights == null ? GLOBAL : flyweights;
+        }
+
+        /**
+         * @param flyweights The table to use on this thread, or null to revert to the process-wide table.
+         * @return The table that was previously bound to this thread, or null if none was.
+         */
+        @Nullable
+        public static Flyweights bind(@Nullable Flyweights flyweights) {
+            Flyweights previous = current.get();
+            if (flyweights == null) {
+                current.remove();
+            } else {
+                current.set(flyweights);
+            }
+            return previous;
+        }
+
+        private Formatting format(String prefix, String suffix) {
+            synchronized (flyweights) {
+                return flyweights
+                        .computeIfAbsent(prefix, p -> HashObjObjMaps.newMutableMap())
+                        .computeIfAbsent(suffix, s -> new Formatting(prefix, s));
+            }
+        }
+
+        public long size() {
+            synchronized (flyweights) {
+                return flyweights.values().stream().mapToLong(Map::size).sum();
+            }
+        }
+
+        public void clear() {
+            synchronized (flyweights) {
+                flyweights.clear();
+            }
+        }
+    }
 }
\ No newline at end of file
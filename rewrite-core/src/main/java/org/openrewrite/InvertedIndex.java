@@ -0,0 +1,569 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite;
+
+import lombok.Data;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Predicate;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * A repository-wide index from the types, methods, and annotations that source files refer to, to the paths
+ * of those source files. Consulted before parsing or visiting to skip the source files that a visitor can't change.
+ * <p>
+ * The index is stored in a single file that is memory-mapped for reading, so opening it costs nothing up front and
+ * lookups only touch the pages they need. It is never modified in place: {@link #toBuilder()} and
+ * {@link Builder#write(Path)} replace the terms of changed source files and swap in a new file.
+ * <p>
+ * The file is laid out as:
+ * <pre>
+ * header   magic, version
+ * paths    (length, UTF-8 bytes) per source path, sorted
+ * terms    (kind, length, UTF-8 bytes, posting count, varint-encoded deltas of source path ids) per term, sorted
+ * offsets  the offset of each source path, then of each term
+ * trailer  source path count, term count, offset of source path offsets, offset of term offsets, version, magic
+ * </pre>
+ */
+public class InvertedIndex {
+    private static final int MAGIC = 0x52574949;
+    private static final int VERSION = 1;
+    private static final int TRAILER_SIZE = 6 * Integer.BYTES;
+
+    private static final InvertedIndex EMPTY = new InvertedIndex(ByteBuffer.allocate(0), 0, 0, 0, 0);
+
+    /**
+     * Only ever read with absolute gets, so that any number of threads can share it.
+     */
+    private final ByteBuffer buffer;
+
+    private final int sourcePathCount;
+    private final int termCount;
+    private final int sourcePathOffsetsStart;
+    private final int termOffsetsStart;
+
+    private InvertedIndex(ByteBuffer buffer, int sourcePathCount, int termCount, int sourcePathOffsetsStart, int termOffsetsStart) {
+        this.buffer = buffer;
+        this.sourcePathCount = sourcePathCount;
+        this.termCount = termCount;
+        this.sourcePathOffsetsStart = sourcePathOffsetsStart;
+        this.termOffsetsStart = termOffsetsStart;
+    }
+
+    public static InvertedIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param path An index file written by {@link Builder#write(Path)}.
+     * @return The index, or an empty index if the file doesn't exist yet.
+     */
+    public static InvertedIndex open(Path path) {
+        if (!Files.exists(path)) {
+            return EMPTY;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            int size = buffer.limit();
+            if (size < 2 * Integer.BYTES + TRAILER_SIZE || buffer.getInt(0) != MAGIC ||
+                    buffer.getInt(size - Integer.BYTES) != MAGIC) {
+                throw new IllegalStateException(path + " is not an inverted index");
+            }
+
+            int version = buffer.getInt(Integer.BYTES);
+            if (version != VERSION || buffer.getInt(size - 2 * Integer.BYTES) != VERSION) {
+                throw new IllegalStateException(path + " is an inverted index of unsupported version " + version);
+            }
+
+            int trailer = size - TRAILER_SIZE;
+            return new InvertedIndex(buffer,
+                    buffer.getInt(trailer),
+                    buffer.getInt(trailer + Integer.BYTES),
+                    buffer.getInt(trailer + 2 * Integer.BYTES),
+                    buffer.getInt(trailer + 3 * Integer.BYTES));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return A builder holding all of the terms of this index, to replace or remove the terms of some source files.
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+
+        String[] sourcePaths = new String[sourcePathCount];
+        for (int i = 0; i < sourcePathCount; i++) {
+            sourcePaths[i] = sourcePath(i);
+            builder.termsBySourcePath.put(sourcePaths[i], new HashSet<>());
+        }
+
+        for (int i = 0; i < termCount; i++) {
+            int termOffset = termOffset(i);
+            Term term = term(termOffset);
+            for (int sourcePathId : postings(termOffset)) {
+                builder.termsBySourcePath.get(sourcePaths[sourcePathId]).add(term);
+            }
+        }
+
+        return builder;
+    }
+
+    public int getSourcePathCount() {
+        return sourcePathCount;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    /**
+     * @return Whether the source file has been indexed. A source file that hasn't been indexed has to be assumed to
+     * refer to anything.
+     */
+    public boolean contains(String sourcePath) {
+        byte[] key = sourcePath.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = sourcePathCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareBytes(sourcePathOffset(mid), key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The paths of the source files that refer to the term.
+     */
+    public Set<String> sourcePaths(Term term) {
+        int termIndex = findTerm(term.getKind(), term.getValue().getBytes(StandardCharsets.UTF_8));
+        if (termIndex < 0) {
+            return emptySet();
+        }
+
+        Set<String> sourcePaths = new HashSet<>();
+        for (int sourcePathId : postings(termOffset(termIndex))) {
+            sourcePaths.add(sourcePath(sourcePathId));
+        }
+        return unmodifiableSet(sourcePaths);
+    }
+
+    /**
+     * Scans every term of a kind, for queries that contain a wildcard.
+     *
+     * @return The paths of the source files that refer to any term of the kind whose value matches.
+     */
+    public Set<String> sourcePaths(Term.Kind kind, Predicate<String> valueMatches) {
+        Set<String> sourcePaths = new HashSet<>();
+
+        // terms are sorted by kind first, so the terms of a kind are contiguous
+        int first = findTerm(kind, new byte[0]);
+        for (int i = first < 0 ? -first - 1 : first; i < termCount; i++) {
+            int termOffset = termOffset(i);
+            if (buffer.get(termOffset) != kind.ordinal()) {
+                break;
+            }
+
+            if (valueMatches.test(readString(termOffset + 1))) {
+                for (int sourcePathId : postings(termOffset)) {
+                    sourcePaths.add(sourcePath(sourcePathId));
+                }
+            }
+        }
+
+        return unmodifiableSet(sourcePaths);
+    }
+
+    /**
+     * @param visitors Visitors, some of which may be {@link Prefilter}s.
+     * @return The visitors, along with which source files each of them could change.
+     */
+    public <S extends SourceVisitor<?>> Prefiltered<S> prefilter(Collection<S> visitors) {
+        List<Set<String>> candidates = new ArrayList<>(visitors.size());
+        for (S visitor : visitors) {
+            candidates.add(visitor instanceof Prefilter ?
+                    ((Prefilter) visitor).candidateSourcePaths(this) :
+                    null);
+        }
+        return new Prefiltered<>(this, new ArrayList<>(visitors), candidates);
+    }
+
+    /**
+     * @return The index of the term if it is present, or else (-(insertion point) - 1).
+     */
+    private int findTerm(Term.Kind kind, byte[] value) {
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int termOffset = termOffset(mid);
+            int cmp = Integer.compare(buffer.get(termOffset), kind.ordinal());
+            if (cmp == 0) {
+                cmp = compareBytes(termOffset + 1, value);
+            }
+
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int sourcePathOffset(int sourcePathId) {
+        return buffer.getInt(sourcePathOffsetsStart + sourcePathId * Integer.BYTES);
+    }
+
+    private int termOffset(int termIndex) {
+        return buffer.getInt(termOffsetsStart + termIndex * Integer.BYTES);
+    }
+
+    private String sourcePath(int sourcePathId) {
+        return readString(sourcePathOffset(sourcePathId));
+    }
+
+    private Term term(int termOffset) {
+        return new Term(Term.KINDS[buffer.get(termOffset)], readString(termOffset + 1));
+    }
+
+    private int[] postings(int termOffset) {
+        int position = termOffset + 1;
+        position += Integer.BYTES + buffer.getInt(position);
+
+        int[] postings = new int[buffer.getInt(position)];
+        position += Integer.BYTES;
+
+        int sourcePathId = 0;
+        for (int i = 0; i < postings.length; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            sourcePathId += delta;
+            postings[i] = sourcePathId;
+        }
+        return postings;
+    }
+
+    private String readString(int offset) {
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + Integer.BYTES + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares a length-prefixed string in the buffer with a key without decoding it.
+     */
+    private int compareBytes(int offset, byte[] key) {
+        int length = buffer.getInt(offset);
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(buffer.get(offset + Integer.BYTES + i) & 0xff, key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private static int compareBytes(byte[] b1, byte[] b2) {
+        int common = Math.min(b1.length, b2.length);
+        for (int i = 0; i < common; i++) {
+            int cmp = Integer.compare(b1[i] & 0xff, b2[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(b1.length, b2.length);
+    }
+
+    /**
+     * Something a source file refers to.
+     */
+    @Data
+    public static class Term {
+        private static final Kind[] KINDS = Kind.values();
+
+        private final Kind kind;
+        private final String value;
+
+        public enum Kind {
+            /**
+             * A fully qualified type name.
+             */
+            Type,
+
+            /**
+             * A method, as its declaring type's fully qualified name, its name, and its parameter types,
+             * e.g. <code>java.util.List add(java.lang.Object)</code>.
+             */
+            Method,
+
+            /**
+             * A method's simple name, for queries whose declaring type or parameter types contain a wildcard.
+             */
+            MethodName,
+
+            /**
+             * The fully qualified type name of an annotation.
+             */
+            Annotation
+        }
+
+        public static Term type(String fullyQualifiedName) {
+            return new Term(Kind.Type, fullyQualifiedName);
+        }
+
+        public static Term method(String signature) {
+            return new Term(Kind.Method, signature);
+        }
+
+        public static Term methodName(String name) {
+            return new Term(Kind.MethodName, name);
+        }
+
+        public static Term annotation(String fullyQualifiedName) {
+            return new Term(Kind.Annotation, fullyQualifiedName);
+        }
+    }
+
+    public static class Builder {
+        private final Map<String, Set<Term>> termsBySourcePath = new HashMap<>();
+
+        Builder() {
+        }
+
+        /**
+         * Replaces any terms already held for the source file.
+         */
+        public Builder sourceFile(String sourcePath, Collection<Term> terms) {
+            termsBySourcePath.put(sourcePath, new HashSet<>(terms));
+            return this;
+        }
+
+        public Builder remove(String sourcePath) {
+            termsBySourcePath.remove(sourcePath);
+            return this;
+        }
+
+        /**
+         * Writes the index to a temporary file next to the destination and then moves it into place, so that
+         * anybody who already has the previous index open can keep using it.
+         *
+         * @param path The destination.
+         * @return The newly written index.
+         */
+        public InvertedIndex write(Path path) {
+            List<String> sourcePaths = new ArrayList<>(termsBySourcePath.keySet());
+            List<byte[]> encodedSourcePaths = new ArrayList<>(sourcePaths.size());
+            for (String sourcePath : sourcePaths) {
+                encodedSourcePaths.add(sourcePath.getBytes(StandardCharsets.UTF_8));
+            }
+
+            Integer[] order = new Integer[sourcePaths.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (i1, i2) -> compareBytes(encodedSourcePaths.get(i1), encodedSourcePaths.get(i2)));
+
+            Map<Term, List<Integer>> postingsByTerm = new HashMap<>();
+            for (int sourcePathId = 0; sourcePathId < order.length; sourcePathId++) {
+                for (Term term : termsBySourcePath.get(sourcePaths.get(order[sourcePathId]))) {
+                    postingsByTerm.computeIfAbsent(term, t -> new ArrayList<>()).add(sourcePathId);
+                }
+            }
+
+            List<Map.Entry<Term, byte[]>> terms = new ArrayList<>(postingsByTerm.size());
+            for (Term term : postingsByTerm.keySet()) {
+                terms.add(new AbstractMap.SimpleImmutableEntry<>(term, term.getValue().getBytes(StandardCharsets.UTF_8)));
+            }
+            terms.sort((t1, t2) -> {
+                int cmp = Integer.compare(t1.getKey().getKind().ordinal(), t2.getKey().getKind().ordinal());
+                return cmp != 0 ? cmp : compareBytes(t1.getValue(), t2.getValue());
+            });
+
+            try {
+                Path parent = path.toAbsolutePath().getParent();
+                Files.createDirectories(parent);
+                Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+
+                    int[] sourcePathOffsets = new int[order.length];
+                    for (int sourcePathId = 0; sourcePathId < order.length; sourcePathId++) {
+                        sourcePathOffsets[sourcePathId] = out.size();
+                        byte[] encoded = encodedSourcePaths.get(order[sourcePathId]);
+                        out.writeInt(encoded.length);
+                        out.write(encoded);
+                    }
+
+                    int[] termOffsets = new int[terms.size()];
+                    for (int i = 0; i < terms.size(); i++) {
+                        termOffsets[i] = out.size();
+                        Map.Entry<Term, byte[]> term = terms.get(i);
+                        out.writeByte(term.getKey().getKind().ordinal());
+                        out.writeInt(term.getValue().length);
+                        out.write(term.getValue());
+
+                        // source path ids were added in ascending order
+                        List<Integer> postings = postingsByTerm.get(term.getKey());
+                        out.writeInt(postings.size());
+                        int previous = 0;
+                        for (int sourcePathId : postings) {
+                            writeVarint(out, sourcePathId - previous);
+                            previous = sourcePathId;
+                        }
+                    }
+
+                    int sourcePathOffsetsStart = out.size();
+                    for (int offset : sourcePathOffsets) {
+                        out.writeInt(offset);
+                    }
+
+                    int termOffsetsStart = out.size();
+                    for (int offset : termOffsets) {
+                        out.writeInt(offset);
+                    }
+
+                    out.writeInt(order.length);
+                    out.writeInt(terms.size());
+                    out.writeInt(sourcePathOffsetsStart);
+                    out.writeInt(termOffsetsStart);
+                    out.writeInt(VERSION);
+                    out.writeInt(MAGIC);
+                } catch (IOException | RuntimeException e) {
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+
+                try {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            return open(path);
+        }
+
+        private static void writeVarint(DataOutputStream out, int value) throws IOException {
+            while ((value & ~0x7f) != 0) {
+                out.writeByte((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+    }
+
+    /**
+     * Implemented by visitors that can tell from an index which source files they could possibly change.
+     */
+    public interface Prefilter {
+        /**
+         * @return The paths of the indexed source files that this visitor could change, or null if the index can't
+         * narrow them down. Source files that aren't in the index are always candidates.
+         */
+        @Nullable
+        Set<String> candidateSourcePaths(InvertedIndex index);
+    }
+
+    /**
+     * Visitors along with the source files each of them could change.
+     */
+    public static class Prefiltered<S extends SourceVisitor<?>> {
+        private final InvertedIndex index;
+        private final List<S> visitors;
+
+        /**
+         * Null entries stand for visitors that could change any source file.
+         */
+        private final List<Set<String>> candidates;
+
+        private Prefiltered(InvertedIndex index, List<S> visitors, List<Set<String>> candidates) {
+            this.index = index;
+            this.visitors = visitors;
+            this.candidates = candidates;
+        }
+
+        /**
+         * @return The paths of the indexed source files that any of the visitors could change, or null if some
+         * visitor could change any source file. Source files that aren't in the index are always candidates.
+         */
+        @Nullable
+        public Set<String> getCandidateSourcePaths() {
+            Set<String> all = new HashSet<>();
+            for (Set<String> visitorCandidates : candidates) {
+                if (visitorCandidates == null) {
+                    return null;
+                }
+                all.addAll(visitorCandidates);
+            }
+            return all;
+        }
+
+        /**
+         * @return The visitors to run on a source file, in their original order.
+         */
+        public List<S> visitors(String sourcePath) {
+            boolean indexed = index.contains(sourcePath);
+
+            List<S> applicable = new ArrayList<>(visitors.size());
+            for (int i = 0; i < visitors.size(); i++) {
+                Set<String> visitorCandidates = candidates.get(i);
+                if (!indexed || visitorCandidates == null || visitorCandidates.contains(sourcePath)) {
+                    applicable.add(visitors.get(i));
+                }
+            }
+            return applicable;
+        }
+    }
+}
@@ -99,6 +99,28 @@ public class RefactorPlan {
                 .collect(Collectors.toList());
     }
 
+    public <T extends Tree> boolean isTypeAttributionRequired(Class<T> sourceType, String... profiles) {
+        return isTypeAttributionRequired(sourceType, Arrays.asList(profiles));
+    }
+
+    /**
+     * @return Whether any of the visitors that would run on source files of this type need them to be parsed with
+     * type attribution. See {@link SourceVisitor#isTypeAttributionRequired()}.
+     */
+    public <T extends Tree> boolean isTypeAttributionRequired(Class<T> sourceType, Iterable<String> profiles) {
+        return this.<T, SourceVisitor<T>>visitors(sourceType, profiles).stream()
+                .anyMatch(SourceVisitor::isTypeAttributionRequired);
+    }
+
+    /**
+     * @param index An index of the source files the visitors will run on.
+     * @return The visitors, along with which source files each of them could change.
+     */
+    public <T extends Tree, S extends SourceVisitor<T>> InvertedIndex.Prefiltered<S> visitors(
+            Class<T> sourceType, InvertedIndex index, Iterable<String> profiles) {
+        return index.prefilter(visitors(sourceType, profiles));
+    }
+
     public static Builder builder() {
         return new Builder();
     }
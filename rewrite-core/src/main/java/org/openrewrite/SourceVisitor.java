@@ -79,6 +79,17 @@ public abstract class SourceVisitor<R> {
         return true;
     }
 
+    /**
+     * Determines whether the source files this visitor runs on have to be parsed with type attribution.
+     * A visitor that only looks at the syntax of the trees (their names, literals and formatting) gives the same
+     * results on trees whose types are all null, and so can run on the output of a cheaper syntax-only parse.
+     *
+     * @return If true, this visitor reads the types of the trees it visits.
+     */
+    public boolean isTypeAttributionRequired() {
+        return true;
+    }
+
     public Validated validate() {
         return Validated.none();
     }
@@ -15,6 +15,7 @@
  */
 package org.openrewrite;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import org.openrewrite.internal.StringUtils;
 import org.openrewrite.internal.lang.Nullable;
@@ -24,8 +25,12 @@ import java.util.UUID;
 
 @JsonTypeInfo(use = JsonTypeInfo.Id.MINIMAL_CLASS, property = "@c")
 public interface Tree {
+    /**
+     * @return An id unique to this process, and with overwhelming probability among all processes, which is
+     * much cheaper to make than a {@link UUID#randomUUID()}.
+     */
     static UUID randomId() {
-        return UUID.randomUUID();
+        return TreeIds.next();
     }
 
     Formatting getFormatting();
@@ -37,6 +42,17 @@ public interface Tree {
      */
     UUID getId();
 
+    /**
+     * @return The least significant bits of the {@link #getId() id}, which are unique within this process for the
+     * ids made by {@link #randomId()}, and with overwhelming probability among the elements of any one tree. Two
+     * elements with different compact ids have different ids, so a compact id is a cheap key to look an element up
+     * by, as long as elements with the same compact id are told apart by their ids.
+     */
+    @JsonIgnore
+    default long getCompactId() {
+        return getId().getLeastSignificantBits();
+    }
+
     /**
      * An overload that allows us to create a copy of any Tree element, optionally
      * changing formatting
@@ -71,7 +87,15 @@ public interface Tree {
     }
 
     default boolean isScope(@Nullable Tree tree) {
-        return tree != null && tree.getId().equals(getId());
+        if (tree == null) {
+            return false;
+        }
+        if (tree == this) {
+            return true;
+        }
+        UUID id = getId();
+        UUID otherId = tree.getId();
+        return id == otherId || id.equals(otherId);
     }
 
     String getTreeType();
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ids for tree elements. {@link UUID#randomUUID()} draws from a single shared {@link SecureRandom}, which every
+ * thread of a parser contends on for every tree element it creates. Instead, the most significant bits are drawn
+ * once per process and the least significant bits count the ids handed out so far from a random start, so an id is
+ * unique within the process and, with overwhelming probability, unique among ids from other processes (e.g. of
+ * serialized trees).
+ * <p>
+ * The least significant bits on their own are the {@link Tree#getCompactId() compact id}, which is unique within the
+ * process. Since every process counts from a different random start, the compact ids of the elements of a tree that
+ * was deserialized and then changed by another process are still unlikely to be the same.
+ */
+final class TreeIds {
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final long PROCESS = RANDOM.nextLong();
+    private static final AtomicLong SEQUENCE = new AtomicLong(RANDOM.nextLong());
+
+    private TreeIds() {
+    }
+
+    static UUID next() {
+        return new UUID(PROCESS, SEQUENCE.incrementAndGet());
+    }
+}
@@ -58,6 +58,11 @@ public class CompositeRefactorVisitor extends SourceVisitor<Tree> {
         return name;
     }
 
+    @Override
+    public boolean isTypeAttributionRequired() {
+        return delegates.stream().anyMatch(SourceVisitor::isTypeAttributionRequired);
+    }
+
     @Override
     public Tree visitTree(Tree tree) {
         if(tree instanceof SourceFile) {
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.internal;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * A lock-free flyweight table. Values are bucketed by a canonical key (e.g. a signature string), and within
+ * a bucket distinct variants are told apart by an equivalence test that is typically more expensive than the key.
+ * <p>
+ * Buckets are immutable arrays that are swapped with compare-and-set, so readers never block and two writers only
+ * contend when they race to publish a new variant under the same key.
+ * <p>
+ * Like a {@link ValueInterner}, a weak table only holds its variants weakly, so a variant that is no longer
+ * referenced by anything else is dropped from its bucket once it has been garbage collected. As long as a value is
+ * still in use, it stays the one that equivalent candidates are interned to.
+ *
+ * @param <T> The type of value being interned.
+ */
+public class Interner<T> implements MeterBinder {
+    private final String name;
+    private final BiPredicate<T, T> equivalence;
+    private final boolean weakValues;
+
+    // holds the values themselves, or weak references to them in a weak table
+    private final ConcurrentMap<String, Object[]> variantsByKey = new ConcurrentHashMap<>();
+
+    private final ReferenceQueue<T> collected = new ReferenceQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder contentions = new LongAdder();
+    private final LongAdder size = new LongAdder();
+
+    /**
+     * @param name        A name used to tag metrics emitted for this table.
+     * @param equivalence Determines whether two values sharing the same key are the same variant.
+     */
+    public Interner(String name, BiPredicate<T, T> equivalence) {
+        this(name, equivalence, false);
+    }
+
+    /**
+     * @param name        A name used to tag metrics emitted for this table.
+     * @param equivalence Determines whether two values sharing the same key are the same variant.
+     * @param weakValues  When true, variants that are no longer referenced elsewhere are dropped from the table by
+     *                    the garbage collector.
+     */
+    public Interner(String name, BiPredicate<T, T> equivalence, boolean weakValues) {
+        this.name = name;
+        this.equivalence = equivalence;
+        this.weakValues = weakValues;
+    }
+
+    /**
+     * @param key       The canonical key of the candidate.
+     * @param candidate A freshly built value.
+     * @return An existing variant equivalent to the candidate, or else the candidate itself once it has been published.
+     */
+    public T intern(String key, T candidate) {
+        return intern(key, candidate, false);
+    }
+
+    /**
+     * @param key        The canonical key of the candidate.
+     * @param candidate  A freshly built value.
+     * @param anyVariant When true, any variant already published under the key is returned without testing
+     *                   it for equivalence with the candidate.
+     * @return An existing variant, or else the candidate itself once it has been published.
+     */
+    public T intern(String key, T candidate, boolean anyVariant) {
+        expungeCollected();
+
+        Object entry = weakValues ? new WeakVariant<>(key, candidate, collected) : candidate;
+        while (true) {
+            Object[] variants = variantsByKey.get(key);
+            if (variants == null) {
+                if (variantsByKey.putIfAbsent(key, new Object[]{entry}) == null) {
+                    misses.increment();
+                    size.increment();
+                    return candidate;
+                }
+            } else {
+                for (Object variantEntry : variants) {
+                    T variant = value(variantEntry);
+                    if (variant != null && (anyVariant || equivalence.test(variant, candidate))) {
+                        hits.increment();
+                        return variant;
+                    }
+                }
+
+                Object[] grown = Arrays.copyOf(variants, variants.length + 1);
+                grown[variants.length] = entry;
+
+                // arrays compare by identity, so this only succeeds if nobody else published into this bucket
+                if (variantsByKey.replace(key, variants, grown)) {
+                    misses.increment();
+                    size.increment();
+                    return candidate;
+                }
+            }
+
+            // another thread published under this key between our read and our write, so rescan
+            contentions.increment();
+        }
+    }
+
+    @Nullable
+    public T findAny(String key) {
+        Object[] variants = variantsByKey.get(key);
+        if (variants != null) {
+            for (Object variantEntry : variants) {
+                T variant = value(variantEntry);
+                if (variant != null) {
+                    return variant;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param key A canonical key.
+     * @return Every variant published under the key, in the order they were published.
+     */
+    public List<T> variants(String key) {
+        Object[] variants = variantsByKey.get(key);
+        if (variants == null) {
+            return emptyList();
+        }
+
+        List<T> values = new ArrayList<>(variants.length);
+        for (Object variantEntry : variants) {
+            T variant = value(variantEntry);
+            if (variant != null) {
+                values.add(variant);
+            }
+        }
+        return unmodifiableList(values);
+    }
+
+    /**
+     * @return The number of distinct variants held by this table.
+     */
+    public long size() {
+        expungeCollected();
+        return size.sum();
+    }
+
+    public void clear() {
+        variantsByKey.clear();
+        size.reset();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Nullable
+    private T value(Object entry) {
+        return weakValues ? ((WeakVariant<T>) entry).get() : (T) entry;
+    }
+
+    /**
+     * Removes variants that have been garbage collected from their buckets, so that a key whose variants are all
+     * gone doesn't keep its bucket.
+     */
+    private void expungeCollected() {
+        Object ref;
+        while ((ref = collected.poll()) != null) {
+            String key = ((WeakVariant<?>) ref).key;
+            while (true) {
+                Object[] variants = variantsByKey.get(key);
+                int index = variants == null ? -1 : indexOf(variants, ref);
+                if (index < 0) {
+                    // never published, or already dropped by clear()
+                    break;
+                }
+
+                Object[] shrunk = new Object[variants.length - 1];
+                System.arraycopy(variants, 0, shrunk, 0, index);
+                System.arraycopy(variants, index + 1, shrunk, index, shrunk.length - index);
+
+                if (shrunk.length == 0 ? variantsByKey.remove(key, variants) : variantsByKey.replace(key, variants, shrunk)) {
+                    size.decrement();
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int indexOf(Object[] variants, Object entry) {
+        for (int i = 0; i < variants.length; i++) {
+            if (variants[i] == entry) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of times a writer lost a race to publish a variant and had to rescan its bucket.
+     */
+    public long getContentions() {
+        return contentions.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("rewrite.intern", this, Interner::getHits)
+                .description("The number of interning requests satisfied by an existing variant")
+                .tag("table", name)
+                .tag("outcome", "hit")
+                .register(registry);
+
+        FunctionCounter.builder("rewrite.intern", this, Interner::getMisses)
+                .description("The number of interning requests that published a new variant")
+                .tag("table", name)
+                .tag("outcome", "miss")
+                .register(registry);
+
+        FunctionCounter.builder("rewrite.intern.contention", this, Interner::getContentions)
+                .description("The number of times a writer had to retry because of a concurrent write to the same key")
+                .tag("table", name)
+                .register(registry);
+
+        Gauge.builder("rewrite.intern.size", this, Interner::size)
+                .description("The number of distinct variants held in the table")
+                .tag("table", name)
+                .register(registry);
+    }
+
+    private static class WeakVariant<T> extends WeakReference<T> {
+        private final String key;
+
+        WeakVariant(String key, T value, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+}
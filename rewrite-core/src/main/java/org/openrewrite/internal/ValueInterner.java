@@ -0,0 +1,186 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.internal;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent flyweight table for values that define their own {@link Object#equals(Object)} and
+ * {@link Object#hashCode()}. Unlike {@link Interner}, there is no separate key and no variants: a value is its own key.
+ * <p>
+ * A weak table only holds its values weakly, so a value that is no longer referenced by any tree is dropped from the
+ * table by the garbage collector instead of being kept for the life of the process.
+ *
+ * @param <T> The type of value being interned.
+ */
+public class ValueInterner<T> implements MeterBinder {
+    private final String name;
+
+    @Nullable
+    private final ConcurrentMap<T, T> strong;
+
+    @Nullable
+    private final ConcurrentMap<WeakValue<T>, WeakValue<T>> weak;
+
+    private final ReferenceQueue<T> collected = new ReferenceQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private ValueInterner(String name, boolean weakValues) {
+        this.name = name;
+        this.strong = weakValues ? null : new ConcurrentHashMap<>();
+        this.weak = weakValues ? new ConcurrentHashMap<>() : null;
+    }
+
+    public static <T> ValueInterner<T> strong(String name) {
+        return new ValueInterner<>(name, false);
+    }
+
+    public static <T> ValueInterner<T> weak(String name) {
+        return new ValueInterner<>(name, true);
+    }
+
+    public T intern(T candidate) {
+        if (strong != null) {
+            T existing = strong.putIfAbsent(candidate, candidate);
+            return record(existing, candidate);
+        }
+
+        expungeCollected();
+
+        WeakValue<T> candidateRef = new WeakValue<>(candidate, collected);
+        while (true) {
+            WeakValue<T> existingRef = weak.putIfAbsent(candidateRef, candidateRef);
+            if (existingRef == null) {
+                return record(null, candidate);
+            }
+
+            T existing = existingRef.get();
+            if (existing != null) {
+                return record(existing, candidate);
+            }
+
+            // the existing value was collected after the lookup matched it, so make room for the candidate
+            weak.remove(existingRef, existingRef);
+        }
+    }
+
+    private T record(@Nullable T existing, T candidate) {
+        if (existing == null) {
+            misses.increment();
+            return candidate;
+        }
+        hits.increment();
+        return existing;
+    }
+
+    private void expungeCollected() {
+        Object ref;
+        while ((ref = collected.poll()) != null) {
+            //noinspection SuspiciousMethodCalls
+            weak.remove(ref);
+        }
+    }
+
+    public long size() {
+        if (strong != null) {
+            return strong.size();
+        }
+        expungeCollected();
+        return weak.size();
+    }
+
+    public boolean isWeak() {
+        return weak != null;
+    }
+
+    public void clear() {
+        if (strong != null) {
+            strong.clear();
+        } else {
+            weak.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("rewrite.intern", this, ValueInterner::getHits)
+                .description("The number of interning requests satisfied by an existing variant")
+                .tag("table", name)
+                .tag("outcome", "hit")
+                .register(registry);
+
+        FunctionCounter.builder("rewrite.intern", this, ValueInterner::getMisses)
+                .description("The number of interning requests that published a new variant")
+                .tag("table", name)
+                .tag("outcome", "miss")
+                .register(registry);
+
+        Gauge.builder("rewrite.intern.size", this, ValueInterner::size)
+                .description("The number of distinct variants held in the table")
+                .tag("table", name)
+                .register(registry);
+    }
+
+    /**
+     * Equal to another reference when both still refer to equal values. A cleared reference is only equal to itself,
+     * which is how it is found again when expunged.
+     */
+    private static class WeakValue<T> extends WeakReference<T> {
+        private final int hash;
+
+        WeakValue(T value, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof WeakValue)) {
+                return false;
+            }
+            T value = get();
+            return value != null && value.equals(((WeakValue<?>) obj).get());
+        }
+    }
+}
@@ -19,4 +19,8 @@ import org.openrewrite.RefactorVisitorSupport;
 import org.openrewrite.SourceVisitor;
 
 public abstract class PlainTextRefactorVisitor extends SourceVisitor<PlainText> implements RefactorVisitorSupport {
+    @Override
+    public boolean isTypeAttributionRequired() {
+        return false;
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.openrewrite.Formatting.format
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+
+class FormattingTest {
+    private val source = "class A {\n    /** Javadoc */\n    void foo() {}\n}"
+
+    @Test
+    fun whitespaceOnlySourceRangeIsShared() {
+        assertThat(format(source, 9, 14)).isSameAs(format("\n    "))
+        assertThat(format(source, 0, 0)).isSameAs(Formatting.EMPTY)
+    }
+
+    @Test
+    fun sourceRangeWithComments() {
+        val start = source.indexOf('\n')
+        val end = source.indexOf("void")
+        val formatting = format(source, start, end)
+
+        assertThat(formatting.prefix).isEqualTo("\n    /** Javadoc */\n    ")
+        assertThat(formatting.suffix).isEmpty()
+        assertThat(formatting.indent).isEqualTo(4)
+
+        val withSuffix = formatting.withSuffix(" ")
+        assertThat(withSuffix.prefix).isEqualTo(formatting.prefix)
+        assertThat(withSuffix.suffix).isEqualTo(" ")
+
+        assertThat(formatting.withPrefix("\n").prefix).isEqualTo("\n")
+    }
+
+    @Test
+    fun javaSerializationDoesNotRetainSource() {
+        val formatting = format(source, source.indexOf('\n'), source.indexOf("void"), ";")
+
+        val bytes = ByteArrayOutputStream()
+        ObjectOutputStream(bytes).use { it.writeObject(formatting) }
+        assertThat(String(bytes.toByteArray(), Charsets.ISO_8859_1)).doesNotContain("class A")
+
+        val read = ObjectInputStream(ByteArrayInputStream(bytes.toByteArray())).use { it.readObject() } as Formatting
+        assertThat(read.prefix).isEqualTo(formatting.prefix)
+        assertThat(read.suffix).isEqualTo(";")
+    }
+}
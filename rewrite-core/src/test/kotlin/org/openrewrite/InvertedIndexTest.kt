@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.openrewrite.InvertedIndex.Term
+import java.nio.file.Path
+
+class InvertedIndexTest {
+    private val list = Term.type("java.util.List")
+    private val set = Term.type("java.util.Set")
+    private val add = Term.methodName("add")
+    private val test = Term.annotation("org.junit.jupiter.api.Test")
+
+    @Test
+    fun sourcePathsByTerm(@TempDir tempDir: Path) {
+        val index = InvertedIndex.builder()
+                .sourceFile("A.java", listOf(list, add))
+                .sourceFile("B.java", listOf(list, set, test))
+                .sourceFile("C.java", listOf(set))
+                .write(tempDir.resolve("index"))
+
+        assertThat(index.sourcePathCount).isEqualTo(3)
+        assertThat(index.sourcePaths(list)).containsExactlyInAnyOrder("A.java", "B.java")
+        assertThat(index.sourcePaths(set)).containsExactlyInAnyOrder("B.java", "C.java")
+        assertThat(index.sourcePaths(add)).containsExactly("A.java")
+        assertThat(index.sourcePaths(Term.type("java.util.Map"))).isEmpty()
+
+        assertThat(index.sourcePaths(Term.Kind.Type) { it.startsWith("java.util.") })
+                .containsExactlyInAnyOrder("A.java", "B.java", "C.java")
+        assertThat(index.sourcePaths(Term.Kind.Annotation) { true }).containsExactly("B.java")
+
+        assertThat(index.contains("A.java")).isTrue()
+        assertThat(index.contains("D.java")).isFalse()
+    }
+
+    @Test
+    fun incrementalUpdate(@TempDir tempDir: Path) {
+        val path = tempDir.resolve("index")
+        val original = InvertedIndex.builder()
+                .sourceFile("A.java", listOf(list))
+                .sourceFile("B.java", listOf(list))
+                .write(path)
+
+        val updated = InvertedIndex.open(path).toBuilder()
+                .remove("A.java")
+                .sourceFile("B.java", listOf(set))
+                .sourceFile("C.java", listOf(list))
+                .write(path)
+
+        assertThat(updated.sourcePaths(list)).containsExactly("C.java")
+        assertThat(updated.sourcePaths(set)).containsExactly("B.java")
+        assertThat(InvertedIndex.open(path).sourcePaths(list)).containsExactly("C.java")
+
+        // readers of the previous index are unaffected
+        assertThat(original.sourcePaths(list)).containsExactlyInAnyOrder("A.java", "B.java")
+    }
+
+    @Test
+    fun missingIndexIsEmpty(@TempDir tempDir: Path) {
+        val index = InvertedIndex.open(tempDir.resolve("index"))
+        assertThat(index.sourcePathCount).isEqualTo(0)
+        assertThat(index.sourcePaths(list)).isEmpty()
+    }
+
+    @Test
+    fun prefilterVisitors(@TempDir tempDir: Path) {
+        val index = InvertedIndex.builder()
+                .sourceFile("A.java", listOf(list))
+                .sourceFile("B.java", listOf(set))
+                .write(tempDir.resolve("index"))
+
+        val listVisitor = TermVisitor(list)
+        val anyVisitor = object : SourceVisitor<Any?>() {
+            override fun defaultTo(t: Tree?): Any? = null
+        }
+
+        val onlyList = index.prefilter(listOf(listVisitor))
+        assertThat(onlyList.candidateSourcePaths).containsExactly("A.java")
+        assertThat(onlyList.visitors("A.java")).containsExactly(listVisitor)
+        assertThat(onlyList.visitors("B.java")).isEmpty()
+
+        // a source file that was never indexed could refer to anything
+        assertThat(onlyList.visitors("C.java")).containsExactly(listVisitor)
+
+        val all = index.prefilter(listOf(listVisitor, anyVisitor))
+        assertThat(all.candidateSourcePaths).isNull()
+        assertThat(all.visitors("B.java")).containsExactly(anyVisitor)
+    }
+
+    private class TermVisitor(private val term: Term) : SourceVisitor<Any?>(), InvertedIndex.Prefilter {
+        override fun defaultTo(t: Tree?): Any? = null
+        override fun candidateSourcePaths(index: InvertedIndex): Set<String> = index.sourcePaths(term)
+    }
+}
@@ -52,6 +52,21 @@ class RefactorPlanTest {
         assertThat(fixed.print()).isEqualTo("overridden")
     }
 
+    @Test
+    fun typeAttributionRequiredOnlyIfAVisitorNeedsTypes() {
+        val plan = planBuilder.build()
+
+        assertThat(plan.isTypeAttributionRequired(PlainText::class.java, "child")).isFalse()
+
+        val typed = object : ChangeText() {
+            override fun isTypeAttributionRequired() = true
+            override fun getName() = "org.openrewrite.text.TypedChangeText"
+        }.apply { toText = "typed" }
+
+        assertThat(planBuilder.visitor(typed).build()
+                .isTypeAttributionRequired(PlainText::class.java, "child")).isTrue()
+    }
+
     @Test
     fun excludes() {
         child.apply {
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.internal
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class InternerTest {
+    private data class Variant(val key: String, val version: Int)
+
+    @Test
+    fun variantsUnderTheSameKeyAreDistinguishedByEquivalence() {
+        val interner = Interner<Variant>("test") { v1, v2 -> v1 == v2 }
+
+        val a1 = interner.intern("a", Variant("a", 1))
+        val a2 = interner.intern("a", Variant("a", 2))
+
+        assertThat(interner.intern("a", Variant("a", 1))).isSameAs(a1)
+        assertThat(interner.intern("a", Variant("a", 2))).isSameAs(a2)
+        assertThat(interner.size()).isEqualTo(2)
+        assertThat(interner.hits).isEqualTo(2)
+        assertThat(interner.misses).isEqualTo(2)
+    }
+
+    @Test
+    fun anyVariant() {
+        val interner = Interner<Variant>("test") { v1, v2 -> v1 == v2 }
+        val a1 = interner.intern("a", Variant("a", 1))
+
+        assertThat(interner.intern("a", Variant("a", 2), true)).isSameAs(a1)
+        assertThat(interner.findAny("a")).isSameAs(a1)
+        assertThat(interner.findAny("b")).isNull()
+    }
+
+    @Test
+    fun concurrentInterningPublishesOneInstancePerVariant() {
+        val interner = Interner<Variant>("test") { v1, v2 -> v1 == v2 }
+        val pool = Executors.newFixedThreadPool(8)
+
+        try {
+            val results = pool.invokeAll((1..8).map {
+                Callable { (0 until 1000).map { i -> interner.intern("k${i % 10}", Variant("k${i % 10}", i % 3)) } }
+            }).flatMap { it.get() }
+
+            assertThat(results.groupBy { it }.keys.size).isEqualTo(30)
+            results.groupBy { it }.forEach { (variant, instances) ->
+                assertThat(instances).allMatch { it === instances[0] }
+                assertThat(interner.intern(variant.key, variant.copy())).isSameAs(instances[0])
+            }
+            assertThat(interner.size()).isEqualTo(30)
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    fun bindMetrics() {
+        val registry = SimpleMeterRegistry()
+        val interner = Interner<Variant>("test") { v1, v2 -> v1 == v2 }
+        interner.bindTo(registry)
+
+        interner.intern("a", Variant("a", 1))
+        interner.intern("a", Variant("a", 1))
+
+        assertThat(registry.get("rewrite.intern").tag("outcome", "hit").functionCounter().count()).isEqualTo(1.0)
+        assertThat(registry.get("rewrite.intern.size").gauge().value()).isEqualTo(1.0)
+    }
+}
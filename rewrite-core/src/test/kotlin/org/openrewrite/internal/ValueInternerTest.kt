@@ -0,0 +1,50 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.internal
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.params.ParameterizedTest
+import org.junit.jupiter.params.provider.ValueSource
+
+class ValueInternerTest {
+    private data class Value(val name: String)
+
+    private fun interner(weak: Boolean) =
+            if (weak) ValueInterner.weak<Value>("test") else ValueInterner.strong<Value>("test")
+
+    @ParameterizedTest
+    @ValueSource(booleans = [true, false])
+    fun equalValuesShareOneInstance(weak: Boolean) {
+        val interner = interner(weak)
+        val a = interner.intern(Value("a"))
+
+        assertThat(interner.intern(Value("a"))).isSameAs(a)
+        assertThat(interner.intern(Value("b"))).isNotSameAs(a)
+        assertThat(interner.size()).isEqualTo(2)
+        assertThat(interner.hits).isEqualTo(1)
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = [true, false])
+    fun clear(weak: Boolean) {
+        val interner = interner(weak)
+        val a = interner.intern(Value("a"))
+        interner.clear()
+
+        assertThat(interner.size()).isEqualTo(0)
+        assertThat(interner.intern(Value("a"))).isNotSameAs(a)
+    }
+}
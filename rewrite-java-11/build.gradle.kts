@@ -1,3 +1,7 @@
+plugins {
+    id("me.champeau.gradle.jmh") version "0.5.0"
+}
+
 dependencies {
     api(project(":rewrite-core"))
     api(project(":rewrite-java"))
@@ -5,6 +9,8 @@ dependencies {
     implementation("org.slf4j:slf4j-api:1.7.+")
 
     testImplementation(project(":rewrite-test"))
+
+    jmh("com.fasterxml.jackson.dataformat:jackson-dataformat-smile:latest.release")
 }
 
 tasks.named<JavaCompile>("compileJava") {
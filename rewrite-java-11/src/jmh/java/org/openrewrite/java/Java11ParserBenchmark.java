@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.TypeCache;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+
+/**
+ * Compares parsing a batch of source files that use a dependency's types with a fresh parser on every run (a cold
+ * start) with a parser that seeds its type cache from a {@link org.openrewrite.java.tree.ClasspathTypeStore} filled
+ * by a previous run (a warm start), and parsing with the mapping to Rewrite ASTs spread over several threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class Java11ParserBenchmark {
+    @Param({"100"})
+    int sourceFiles;
+
+    private Path sourceDir;
+    private Path storeDir;
+    private List<Path> sources;
+    private List<Path> classpath;
+
+    @Setup
+    public void setup() throws IOException, URISyntaxException {
+        sourceDir = Files.createTempDirectory("sources");
+        storeDir = Files.createTempDirectory("types");
+
+        sources = new ArrayList<>();
+        for (int i = 0; i < sourceFiles; i++) {
+            Path source = sourceDir.resolve("A" + i + ".java");
+            Files.write(source, source(i).getBytes());
+            sources.add(source);
+        }
+
+        classpath = asList(jarOf(ObjectMapper.class), jarOf(JsonParser.class), jarOf(JsonProperty.class));
+
+        // what a previous run leaves behind
+        parser(true).parse(sources, sourceDir);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Path dir : asList(sourceDir, storeDir)) {
+            //noinspection ResultOfMethodCallIgnored
+            Files.walk(dir)
+                    .sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
+    private Java11Parser parser(boolean warm) {
+        Java11Parser.Builder builder = Java11Parser.builder()
+                .classpath(classpath)
+                .typeCache(new TypeCache("benchmark"))
+                .logCompilationWarningsAndErrors(false);
+        if (warm) {
+            builder.classpathTypeStore(storeDir);
+        }
+        return builder.build();
+    }
+
+    private static Path jarOf(Class<?> clazz) throws URISyntaxException {
+        return Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    private static String source(int i) {
+        return "package org.openrewrite.benchmark" + (i % 10) + ";\n" +
+                "\n" +
+                "import com.fasterxml.jackson.annotation.JsonProperty;\n" +
+                "import com.fasterxml.jackson.core.JsonParser;\n" +
+                "import com.fasterxml.jackson.databind.*;\n" +
+                "\n" +
+                "import java.io.IOException;\n" +
+                "import java.util.*;\n" +
+                "\n" +
+                "public class A" + i + " {\n" +
+                "    private final ObjectMapper mapper = new ObjectMapper()\n" +
+                "            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);\n" +
+                "\n" +
+                "    @JsonProperty(\"names\")\n" +
+                "    private List<String> names = new ArrayList<>();\n" +
+                "\n" +
+                "    public Map<String, Object> read(String json) throws IOException {\n" +
+                "        JsonNode node = mapper.readTree(json);\n" +
+                "        JsonParser parser = mapper.getFactory().createParser(json);\n" +
+                "        Map<String, Object> values = new HashMap<>();\n" +
+                "        node.fieldNames().forEachRemaining(name -> values.put(name, node.get(name).asText()));\n" +
+                "        names.addAll(values.keySet());\n" +
+                "        parser.close();\n" +
+                "        return values;\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> coldStart() {
+        return parser(false).parse(sources, sourceDir);
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> warmStart() {
+        return parser(true).parse(sources, sourceDir);
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> parallelMapping() {
+        return Java11Parser.builder()
+                .classpath(classpath)
+                .typeCache(new TypeCache("benchmark"))
+                .logCompilationWarningsAndErrors(false)
+                .parallelism(Runtime.getRuntime().availableProcessors())
+                .build()
+                .parse(sources, sourceDir);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.tree;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openrewrite.java.Java11Parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing and reading a batch of compilation units in the binary format of {@link TreeSerializer} with the
+ * Jackson Smile format it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TreeSerializerBenchmark {
+    private static final TypeReference<List<J.CompilationUnit>> cuListType = new TypeReference<List<J.CompilationUnit>>() {
+    };
+
+    @Param({"100"})
+    int sourceFiles;
+
+    private TreeSerializer serializer;
+    private TreeSerializer lazySerializer;
+    private ObjectMapper smileMapper;
+
+    private List<J.CompilationUnit> cus;
+    private byte[] binary;
+    private byte[] smile;
+
+    @Setup
+    public void setup() throws IOException {
+        TypeCache typeCache = new TypeCache("benchmark");
+        serializer = new TreeSerializer(typeCache);
+        lazySerializer = new TreeSerializer(typeCache, true);
+
+        SmileFactory f = new SmileFactory();
+        f.configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true);
+        smileMapper = new ObjectMapper(f).setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < sourceFiles; i++) {
+            sources.add(source(i));
+        }
+        cus = new ArrayList<>();
+        for (String source : sources) {
+            cus.add(Java11Parser.builder().build().parse(source));
+        }
+
+        binary = serializer.write(cus);
+        smile = smileMapper.writeValueAsBytes(cus);
+    }
+
+    private static String source(int i) {
+        return "package org.openrewrite.benchmark" + (i % 10) + ";\n" +
+                "\n" +
+                "import java.util.*;\n" +
+                "import java.util.function.Function;\n" +
+                "\n" +
+                "/**\n" +
+                " * A class to serialize.\n" +
+                " */\n" +
+                "public class A" + i + "<T extends Comparable<T>> {\n" +
+                "    private final Map<String, List<T>> byName = new HashMap<>();\n" +
+                "    private int count = " + i + ";\n" +
+                "\n" +
+                "    public void add(String name, T value) {\n" +
+                "        byName.computeIfAbsent(name, n -> new ArrayList<>()).add(value);\n" +
+                "        count++;\n" +
+                "    }\n" +
+                "\n" +
+                "    public <R> List<R> map(String name, Function<T, R> f) {\n" +
+                "        List<R> mapped = new ArrayList<>();\n" +
+                "        for (T value : byName.getOrDefault(name, Collections.emptyList())) {\n" +
+                "            if (value != null && count > 0) {\n" +
+                "                mapped.add(f.apply(value));\n" +
+                "            }\n" +
+                "        }\n" +
+                "        return mapped;\n" +
+                "    }\n" +
+                "\n" +
+                "    @Override\n" +
+                "    public String toString() {\n" +
+                "        return \"A" + i + "{count=\" + count + \", names=\" + byName.keySet() + \"}\";\n" +
+                "    }\n" +
+                "}\n";
+    }
+
+    @Benchmark
+    public byte[] writeBinary() {
+        return serializer.write(cus);
+    }
+
+    @Benchmark
+    public byte[] writeSmile() throws IOException {
+        return smileMapper.writeValueAsBytes(cus);
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> readBinary() {
+        return serializer.readList(binary);
+    }
+
+    /**
+     * What a recipe that only looks at imports pays to read the trees when bodies are decoded lazily.
+     */
+    @Benchmark
+    public int readBinaryLazyImports() {
+        int imports = 0;
+        for (J.CompilationUnit cu : lazySerializer.readList(binary)) {
+            imports += cu.getImports().size();
+        }
+        return imports;
+    }
+
+    @Benchmark
+    public List<J.CompilationUnit> readSmile() {
+        return serializer.readList(smile);
+    }
+}
@@ -16,9 +16,12 @@
 package org.openrewrite.java;
 
 import com.sun.tools.javac.comp.*;
+import com.sun.tools.javac.file.CacheFSInfo;
+import com.sun.tools.javac.file.FSInfo;
 import com.sun.tools.javac.file.JavacFileManager;
 import com.sun.tools.javac.main.JavaCompiler;
 import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeScanner;
 import com.sun.tools.javac.util.Context;
 import com.sun.tools.javac.util.Log;
 import com.sun.tools.javac.util.Options;
@@ -27,11 +30,16 @@ import io.micrometer.core.instrument.Timer;
 import org.openrewrite.Formatting;
 import org.openrewrite.internal.lang.NonNullApi;
 import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.search.ReferenceIndex;
+import org.openrewrite.java.tree.ClasspathTypeStore;
 import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.TypeCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.tools.JavaFileManager;
+import javax.tools.SimpleJavaFileObject;
 import javax.tools.StandardLocation;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -40,18 +48,24 @@ import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import static java.util.Collections.emptyMap;
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.StreamSupport.stream;
 
 /**
- * This parser is NOT thread-safe, as the OpenJDK parser maintains in-memory caches in static state.
+ * This parser is NOT thread-safe, as the OpenJDK parser maintains in-memory caches in its context. Threads that
+ * parse at once can share the parsers of a {@link JavaParserPool} instead.
+ * <p>
+ * A single call to {@link #parse(List, Path)} can nevertheless map the compiler's ASTs to Rewrite ASTs on several
+ * threads (see {@link JavaParser.Builder#parallelism(int)}). By then, type attribution has completed every symbol the
+ * mapping reads, and the mapping only reads them.
  */
 @NonNullApi
 public class Java11Parser implements JavaParser {
@@ -72,22 +86,64 @@ public class Java11Parser implements JavaParser {
      */
     private final boolean relaxedClassTypeMatching;
 
+    private final TypeCache typeCache;
+
+    /**
+     * Maps the compiler's ASTs to Rewrite ASTs, or null to map them on the calling thread.
+     */
+    @Nullable
+    private final ForkJoinPool mappingPool;
+
+    /**
+     * When false, source files are parsed but not attributed, so the compilation units have no types.
+     */
+    private final boolean typeAttribution;
+
+    @Nullable
+    private final ClasspathTypeStore classpathTypeStore;
+
+    /**
+     * The jars of the classpath whose stored types have been loaded, and the stored types of each jar, by
+     * {@link JavaTypeMemo#jarOf(Path)}.
+     */
+    private final Map<Path, ClasspathJar> classpathJars = new HashMap<>();
+    private final Map<String, Map<String, JavaType.Class>> classpathTypes = new ConcurrentHashMap<>();
+
     private final JavacFileManager pfm;
 
     private final Context context = new Context();
     private final JavaCompiler compiler;
     private final ResettableLog compilerLog = new ResettableLog(context);
 
+    /**
+     * Whether the compilation units parsed since the last {@link #reset()} have set up javac's modules, so that
+     * more compilation units only have to be entered into them.
+     */
+    private boolean modulesInitialized = false;
+
     private Java11Parser(@Nullable List<Path> classpath, Charset charset,
                          boolean relaxedClassTypeMatching,
                          MeterRegistry meterRegistry,
-                         boolean logCompilationWarningsAndErrors) {
+                         boolean logCompilationWarningsAndErrors,
+                         TypeCache typeCache,
+                         int parallelism,
+                         boolean typeAttribution,
+                         @Nullable ClasspathTypeStore classpathTypeStore,
+                         FSInfo fsInfo) {
         this.meterRegistry = meterRegistry;
         this.classpath = classpath;
         this.charset = charset;
         this.relaxedClassTypeMatching = relaxedClassTypeMatching;
+        this.typeCache = typeCache;
+        this.mappingPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        this.typeAttribution = typeAttribution;
+        this.classpathTypeStore = classpathTypeStore;
+        // MUST be registered with the context before the file manager looks it up
+        context.put(FSInfo.class, fsInfo);
         this.pfm = new JavacFileManager(context, true, charset);
 
+        typeCache.bindTo(meterRegistry);
+
         // otherwise, consecutive string literals in binary expressions are concatenated by the parser, losing the original
         // structure of the expression!
         Options.instance(context).put("allowStringFolding", "false");
@@ -123,8 +179,148 @@ public class Java11Parser implements JavaParser {
         return new Builder();
     }
 
+    /**
+     * Each source file is read and decoded once, and the same text is handed to both javac and the AST mapper.
+     */
     @Override
     public List<J.CompilationUnit> parse(List<Path> sourceFiles, @Nullable Path relativeTo) {
+        List<InMemorySource> sources = sources(read(filterSourceFiles(sourceFiles)));
+        return typeCache.run(() -> new ArrayList<>(parseInTypeCache(sources, relativeTo, emptyMap(), emptyMap()).values()));
+    }
+
+    @Override
+    public List<J.CompilationUnit> parseInputs(List<Input> inputs, @Nullable Path relativeTo) {
+        List<InMemorySource> sources = sources(inputs);
+        return typeCache.run(() -> new ArrayList<>(parseInTypeCache(sources, relativeTo, emptyMap(), emptyMap()).values()));
+    }
+
+    /**
+     * Batches are ordered by {@link JavaSourceBatches}. Every batch after the first is entered into the symbol table
+     * that the batches before it left, so this parser is reset before the first batch, but not between batches.
+     * Each source file is read once, up front, for both the batching and the parse.
+     */
+    @Override
+    public void parse(List<Path> sourceFiles, @Nullable Path relativeTo, int batchSize,
+                      Consumer<J.CompilationUnit> onParsed) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, but was " + batchSize);
+        }
+
+        List<List<Input>> batches = JavaSourceBatches.of(read(filterSourceFiles(sourceFiles)), batchSize);
+
+        reset();
+        typeCache.run(() -> {
+            for (List<Input> batch : batches) {
+                parseInTypeCache(sources(batch), relativeTo, emptyMap(), emptyMap()).values().forEach(onParsed);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Session parseSession(List<Path> sourceFiles, @Nullable Path relativeTo) {
+        List<InMemorySource> sources = sources(read(filterSourceFiles(sourceFiles)));
+        return new Session(relativeTo, typeCache.run(() -> parseInTypeCache(sources, relativeTo, emptyMap(), emptyMap())));
+    }
+
+    /**
+     * javac can't take a class back out of its symbol table, so every source file of the session is parsed and
+     * entered again. Entering is cheap next to attribution, which is only done for the source files that changed and
+     * those that refer to a type that a changed source file declared. Only those are mapped to Rewrite ASTs again.
+     * <p>
+     * Whether a source file refers to a changed type is judged by the types it names and the declaring types of the
+     * methods it invokes in the previous parse. A source file that only failed to resolve a type that is declared by
+     * a newly added source file isn't attributed again. Resets this parser.
+     */
+    @Override
+    public Session reparse(Session session, Collection<Path> changed) {
+        List<Path> changedFiles = changed.stream().map(Path::toAbsolutePath).collect(toList());
+        Set<Path> changedPaths = new HashSet<>(changedFiles);
+
+        // the types that the changed source files declared before they changed
+        Set<String> changedTypes = new HashSet<>();
+        for (Path changedFile : changedFiles) {
+            J.CompilationUnit previous = session.getCompilationUnit(changedFile);
+            if (previous != null) {
+                for (JavaType.Class declared : previous.getReferenceIndex().getDeclaredTypes()) {
+                    changedTypes.add(declared.getFullyQualifiedName());
+                }
+            }
+        }
+
+        List<Path> sourceFiles = new ArrayList<>();
+        Map<Path, J.CompilationUnit> unchanged = new HashMap<>();
+        Map<Path, UUID> ids = new HashMap<>();
+        for (Path sourceFile : session.getSourceFiles()) {
+            if (changedPaths.contains(sourceFile) && !Files.exists(sourceFile)) {
+                continue; // deleted
+            }
+
+            J.CompilationUnit previous = session.getCompilationUnit(sourceFile);
+            sourceFiles.add(sourceFile);
+            ids.put(sourceFile, previous.getId());
+            if (!changedPaths.contains(sourceFile) && !refersTo(previous, changedTypes)) {
+                unchanged.put(sourceFile, previous);
+            }
+        }
+
+        for (Path added : filterSourceFiles(changedFiles)) {
+            if (session.getCompilationUnit(added) == null && Files.exists(added)) {
+                sourceFiles.add(added);
+            }
+        }
+
+        reset();
+
+        List<InMemorySource> sources = sources(read(sourceFiles));
+        return new Session(session.getRelativeTo(), typeCache.run(() ->
+                parseInTypeCache(sources, session.getRelativeTo(), unchanged, ids)));
+    }
+
+    private static boolean refersTo(J.CompilationUnit cu, Set<String> types) {
+        if (types.isEmpty()) {
+            return false;
+        }
+
+        ReferenceIndex index = cu.getReferenceIndex();
+        for (String type : types) {
+            if (index.hasType(type)) {
+                return true;
+            }
+        }
+        for (JavaType.Method method : index.getInvokedMethods()) {
+            if (types.contains(method.getDeclaringType().getFullyQualifiedName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Input> read(List<Path> sourceFiles) {
+        return sourceFiles.stream()
+                .map(sourceFile -> {
+                    try {
+                        return new Input(sourceFile.toAbsolutePath(), Files.readString(sourceFile, charset));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .collect(toList());
+    }
+
+    private static List<InMemorySource> sources(List<Input> inputs) {
+        return inputs.stream().map(InMemorySource::new).collect(toList());
+    }
+
+    /**
+     * @param unchanged Compilation units from a previous parse of some of the sources, by path. Those sources are
+     *                  entered, so that the others can refer to them, but they are neither attributed nor mapped,
+     *                  and their previous compilation units are returned instead.
+     * @param ids       The ids to give the compilation units of some of the sources, by path.
+     * @return The compilation units, by path, in the order of the sources.
+     */
+    private Map<Path, J.CompilationUnit> parseInTypeCache(List<InMemorySource> sources, @Nullable Path relativeTo,
+                                                          Map<Path, J.CompilationUnit> unchanged, Map<Path, UUID> ids) {
         if (classpath != null) { // override classpath
             if (context.get(JavaFileManager.class) != pfm) {
                 throw new IllegalStateException("JavaFileManager has been forked unexpectedly");
@@ -135,12 +331,20 @@ public class Java11Parser implements JavaParser {
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
+
+            if (classpathTypeStore != null && typeAttribution) {
+                Timer.builder("rewrite.parse")
+                        .description("The time spent loading the stored class types of the classpath's jars")
+                        .tag("file.type", "Java")
+                        .tag("step", "Classpath type loading")
+                        .register(meterRegistry)
+                        .record(this::loadClasspathTypes);
+            }
         }
 
-        var fileObjects = pfm.getJavaFileObjects(filterSourceFiles(sourceFiles).toArray(Path[]::new));
-        var cus = stream(fileObjects.spliterator(), false)
+        var cus = sources.stream()
                 .collect(Collectors.toMap(
-                        p -> Paths.get(p.toUri()),
+                        p -> p.path,
                         filename -> Timer.builder("rewrite.parse")
                                 .description("The time spent by the JDK in parsing and tokenizing the source file")
                                 .tag("file.type", "Java")
@@ -149,9 +353,58 @@ public class Java11Parser implements JavaParser {
                                 .record(() -> compiler.parse(filename)),
                         (e2, e1) -> e1, LinkedHashMap::new));
 
+        if (typeAttribution) {
+            attribute(cus.values(), unchanged.keySet());
+        }
+
+        Map<Path, JCTree.JCCompilationUnit> changed = cus;
+        if (!unchanged.isEmpty()) {
+            changed = new LinkedHashMap<>(cus);
+            changed.keySet().removeAll(unchanged.keySet());
+        }
+
+        // types that are referred to from many source files are converted once for the whole batch
+        JavaTypeMemo typeMemo = new JavaTypeMemo(classpathTypes);
+        Iterator<J.CompilationUnit> mapped = mapAll(changed, relativeTo, typeMemo, ids).iterator();
+
+        if (classpathTypeStore != null && typeAttribution) {
+            saveClasspathTypes(typeMemo);
+        }
+
+        release(cus.values());
+
+        // the text and line positions of sources that javac reported diagnostics on, which it would otherwise keep
+        compilerLog.reset();
+
+        Map<Path, J.CompilationUnit> parsed = new LinkedHashMap<>();
+        for (Path path : cus.keySet()) {
+            J.CompilationUnit unchangedCu = unchanged.get(path);
+            parsed.put(path, unchangedCu == null ? mapped.next() : unchangedCu);
+        }
+        return parsed;
+    }
+
+    /**
+     * Enters the symbols of the source files and attributes their types. Skipped by a syntax-only parse, which
+     * leaves every type null.
+     *
+     * @param unattributed The paths of source files whose symbols are entered, but which aren't attributed.
+     */
+    private void attribute(Collection<JCTree.JCCompilationUnit> cus, Set<Path> unattributed) {
         try {
-            initModules(cus.values());
-            enterAll(cus.values());
+            if (modulesInitialized) {
+                // a later batch of the same parse, to be entered alongside the batches before it
+                Modules.instance(context).enter(com.sun.tools.javac.util.List.from(cus), null);
+            } else {
+                initModules(cus);
+                modulesInitialized = true;
+            }
+            Timer.builder("rewrite.parse")
+                    .description("The time spent by the JDK in entering the symbols of the source files")
+                    .tag("file.type", "Java")
+                    .tag("step", "Symbol entering")
+                    .register(meterRegistry)
+                    .record(() -> enterAll(cus));
 
             // For some reason this is necessary in JDK 9+, where the the internal block counter that
             // annotationsBlocked() tests against remains >0 after attribution.
@@ -160,37 +413,174 @@ public class Java11Parser implements JavaParser {
                 annotate.unblockAnnotations(); // also flushes once unblocked
             }
 
-            compiler.attribute(new TimedTodo(compiler.todo));
+            if (unattributed.isEmpty()) {
+                compiler.attribute(new TimedTodo(compiler.todo));
+            } else {
+                // drained either way, or what is left in it would be attributed along with the next parse
+                Queue<Env<AttrContext>> todo = new ArrayDeque<>();
+                while (!compiler.todo.isEmpty()) {
+                    Env<AttrContext> env = compiler.todo.remove();
+                    if (!unattributed.contains(((InMemorySource) env.toplevel.getSourceFile()).path)) {
+                        todo.add(env);
+                    }
+                }
+                compiler.attribute(new TimedTodo(todo));
+            }
         } catch (Throwable t) {
             // when symbol entering fails on problems like missing types, attribution can often times proceed
             // unhindered, but it sometimes cannot (so attribution is always a BEST EFFORT in the presence of errors)
             logger.warn("Failed symbol entering or attribution", t);
         }
+    }
 
-        return cus.entrySet().stream().map(cuByPath ->
-                Timer.builder("rewrite.parse")
-                        .description("The time spent mapping the OpenJDK AST to Rewrite's AST")
-                        .tag("file.type", "Java")
-                        .tag("step", "Map to Rewrite AST")
-                        .register(meterRegistry)
-                        .record(() -> {
-                            var path = cuByPath.getKey();
-                            logger.trace("Building AST for {}", path.toAbsolutePath().getFileName());
-                            try {
-                                Java11ParserVisitor parser = new Java11ParserVisitor(
-                                        relativeTo == null ? path : relativeTo.relativize(path),
-                                        Files.readString(path, charset),
-                                        relaxedClassTypeMatching);
-                                return (J.CompilationUnit) parser.scan(cuByPath.getValue(), Formatting.EMPTY);
-                            } catch (IOException e) {
-                                throw new UncheckedIOException(e);
-                            }
-                        })
-        ).collect(toList());
+    /**
+     * Once mapped, the compiler's trees are only kept for the symbols they declared. Dropping method bodies,
+     * end positions, and doc comments, which make up most of a tree, lets them be collected while javac holds on to
+     * the rest. The source text is dropped too, since both the tree and the class symbols it declared refer to it.
+     */
+    private static void release(Collection<JCTree.JCCompilationUnit> cus) {
+        var bodies = new TreeScanner() {
+            @Override
+            public void visitMethodDef(JCTree.JCMethodDecl tree) {
+                tree.body = null;
+            }
+
+            @Override
+            public void visitBlock(JCTree.JCBlock tree) {
+                // initializer blocks and the bodies of lambdas in field initializers, as method bodies aren't scanned
+                tree.stats = com.sun.tools.javac.util.List.nil();
+            }
+        };
+
+        for (JCTree.JCCompilationUnit cu : cus) {
+            bodies.scan(cu);
+            cu.endPositions = null;
+            cu.docComments = null;
+            if (cu.sourcefile instanceof InMemorySource) {
+                ((InMemorySource) cu.sourcefile).release();
+            }
+        }
+    }
+
+    private List<J.CompilationUnit> mapAll(Map<Path, JCTree.JCCompilationUnit> cus, @Nullable Path relativeTo,
+                                           JavaTypeMemo typeMemo, Map<Path, UUID> ids) {
+        if (mappingPool == null || cus.size() < 2) {
+            return cus.entrySet().stream()
+                    .map(cuByPath -> map(cuByPath.getKey(), cuByPath.getValue(), relativeTo, typeMemo, ids.get(cuByPath.getKey())))
+                    .collect(toList());
+        }
+
+        // submitted in order and collected in order, so the compilation units are in the order of the source files
+        List<Future<J.CompilationUnit>> mapped = new ArrayList<>(cus.size());
+        for (Map.Entry<Path, JCTree.JCCompilationUnit> cuByPath : cus.entrySet()) {
+            mapped.add(mappingPool.submit(() -> typeCache.run(() ->
+                    map(cuByPath.getKey(), cuByPath.getValue(), relativeTo, typeMemo, ids.get(cuByPath.getKey())))));
+        }
+
+        List<J.CompilationUnit> mappedCus = new ArrayList<>(mapped.size());
+        for (Future<J.CompilationUnit> cu : mapped) {
+            try {
+                mappedCus.add(cu.get());
+            } catch (InterruptedException e) {
+                mapped.forEach(m -> m.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while mapping to Rewrite ASTs", e);
+            } catch (ExecutionException e) {
+                mapped.forEach(m -> m.cancel(true));
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return mappedCus;
+    }
+
+    private J.CompilationUnit map(Path path, JCTree.JCCompilationUnit cu, @Nullable Path relativeTo,
+                                  JavaTypeMemo typeMemo, @Nullable UUID id) {
+        // the same text javac parsed, so the source is never read twice
+        var source = ((InMemorySource) cu.getSourceFile()).source.toString();
+
+        return Timer.builder("rewrite.parse")
+                .description("The time spent mapping the OpenJDK AST to Rewrite's AST")
+                .tag("file.type", "Java")
+                .tag("step", "Map to Rewrite AST")
+                .register(meterRegistry)
+                .record(() -> {
+                    logger.trace("Building AST for {}", path.toAbsolutePath().getFileName());
+                    Java11ParserVisitor parser = new Java11ParserVisitor(
+                            relativeTo == null ? path : relativeTo.relativize(path),
+                            source,
+                            relaxedClassTypeMatching,
+                            typeMemo,
+                            id);
+                    return (J.CompilationUnit) parser.scan(cu, Formatting.EMPTY);
+                });
+    }
+
+    private void loadClasspathTypes() {
+        if (classpath == null || classpathTypeStore == null) {
+            return;
+        }
+
+        for (Path entry : classpath) {
+            if (!classpathJars.containsKey(entry) && entry.getFileName().toString().endsWith(".jar") &&
+                    Files.isRegularFile(entry)) {
+                var jar = new ClasspathJar(JavaTypeMemo.jarOf(entry), classpathTypeStore.checksum(entry));
+                jar.stored = classpathTypeStore.load(entry, jar.checksum);
+                classpathTypes.put(jar.uri, jar.stored);
+                classpathJars.put(entry, jar);
+            }
+        }
+    }
+
+    /**
+     * Stores the types of any jar that this parse has converted class types of that aren't stored yet, or that are
+     * more complete than those stored.
+     */
+    private void saveClasspathTypes(JavaTypeMemo typeMemo) {
+        if (classpathTypeStore == null) {
+            return;
+        }
+
+        for (Map.Entry<Path, ClasspathJar> jarByPath : classpathJars.entrySet()) {
+            var jar = jarByPath.getValue();
+
+            Map<String, JavaType.Class> stored = null;
+            for (JavaType.Class converted : typeMemo.convertedClasspathTypes(jar.uri).values()) {
+                var previous = jar.stored.get(converted.getFullyQualifiedName());
+                if (previous == null || ClasspathTypeStore.completeness(previous) < ClasspathTypeStore.completeness(converted)) {
+                    if (stored == null) {
+                        stored = new HashMap<>(jar.stored);
+                    }
+                    stored.put(converted.getFullyQualifiedName(), converted);
+                }
+            }
+
+            if (stored != null) {
+                try {
+                    classpathTypeStore.save(jarByPath.getKey(), jar.checksum, stored.values());
+                } catch (UncheckedIOException e) {
+                    logger.warn("Unable to store the class types of " + jarByPath.getKey(), e);
+                    continue;
+                }
+                jar.stored = stored;
+                classpathTypes.put(jar.uri, stored);
+            }
+        }
+    }
+
+    @Override
+    public TypeCache getTypeCache() {
+        return typeCache;
     }
 
     @Override
     public Java11Parser reset() {
+        modulesInitialized = false;
         compilerLog.reset();
         pfm.flush();
         Check.instance(context).newRound();
@@ -233,11 +623,58 @@ public class Java11Parser implements JavaParser {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Source that javac reads from memory rather than from the file system, either because it was never on disk or
+     * because it has already been read for the AST mapper.
+     */
+    private static class InMemorySource extends SimpleJavaFileObject {
+        private final Path path;
+        private CharSequence source;
+
+        private InMemorySource(Input input) {
+            super(input.getPath().toAbsolutePath().toUri(), Kind.SOURCE);
+            this.path = input.getPath();
+            this.source = input.getSource();
+        }
+
+        /**
+         * Drops the text once the source has been mapped. javac only reads it again to report a diagnostic, which
+         * then has no source line to show.
+         */
+        private void release() {
+            source = "";
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+
+    private static class ClasspathJar {
+        /**
+         * The jar in the form of {@link JavaTypeMemo#jarOf(Path)}.
+         */
+        private final String uri;
+
+        private final String checksum;
+
+        /**
+         * The class types stored for this version of the jar.
+         */
+        private Map<String, JavaType.Class> stored = emptyMap();
+
+        private ClasspathJar(String uri, String checksum) {
+            this.uri = uri;
+            this.checksum = checksum;
+        }
+    }
+
     private class TimedTodo extends Todo {
-        private final Todo todo;
+        private final Queue<Env<AttrContext>> todo;
         private Timer.Sample sample;
 
-        private TimedTodo(Todo todo) {
+        private TimedTodo(Queue<Env<AttrContext>> todo) {
             super(new Context());
             this.todo = todo;
         }
@@ -262,10 +699,34 @@ public class Java11Parser implements JavaParser {
     }
 
     public static class Builder extends JavaParser.Builder<Java11Parser, Builder> {
+        /**
+         * Shared by every parser this builder builds (e.g. the parsers of a {@link JavaParserPool}), so that the
+         * canonical paths, attributes, and manifest class paths of the classpath's jars are only looked up once.
+         */
+        @Nullable
+        private FSInfo fsInfo;
+
+        /**
+         * Shared by every parser this builder builds, so that the checksum of each of the classpath's jars is only
+         * computed once.
+         */
+        @Nullable
+        private ClasspathTypeStore sharedClasspathTypeStore;
+
         @Override
-        public Java11Parser build() {
+        public synchronized Java11Parser build() {
+            if (fsInfo == null) {
+                fsInfo = new CacheFSInfo();
+            }
+            if (classpathTypeStore == null) {
+                sharedClasspathTypeStore = null;
+            } else if (sharedClasspathTypeStore == null ||
+                    !sharedClasspathTypeStore.getDirectory().equals(classpathTypeStore)) {
+                sharedClasspathTypeStore = new ClasspathTypeStore(classpathTypeStore);
+            }
             return new Java11Parser(classpath, charset, relaxedClassTypeMatching,
-                    meterRegistry, logCompilationWarningsAndErrors);
+                    meterRegistry, logCompilationWarningsAndErrors, typeCache, parallelism,
+                    typeAttribution, sharedClasspathTypeStore, fsInfo);
         }
     }
 }
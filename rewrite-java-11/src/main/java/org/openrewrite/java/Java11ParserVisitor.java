@@ -31,11 +31,11 @@ import org.slf4j.LoggerFactory;
 
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.Name;
+import javax.tools.JavaFileObject;
 import java.lang.reflect.Field;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.regex.Pattern;
@@ -55,17 +55,56 @@ import static org.openrewrite.Tree.randomId;
 public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
     private static final Logger logger = LoggerFactory.getLogger(Java11ParserVisitor.class);
 
+    private static final Pattern DIMENSION = Pattern.compile("\\G(\\s*)\\[(\\s*)]");
+    private static final Pattern VARARGS = Pattern.compile("(\\s*)\\.{3}");
+    private static final Pattern VARARGS_AT_CURSOR = Pattern.compile("\\G(\\s*)\\.{3}");
+    private static final Pattern STATIC_IMPORT = Pattern.compile("\\G\\s+static");
+
+    private static final Map<Modifier, String> MODIFIER_KEYWORDS = new EnumMap<>(Modifier.class);
+
+    static {
+        for (Modifier modifier : Modifier.values()) {
+            MODIFIER_KEYWORDS.put(modifier, modifier.toString());
+        }
+    }
+
     private final Path path;
     private final String source;
     private final boolean relaxedClassTypeMatching;
+    private final JavaTypeMemo typeMemo;
+
+    @Nullable
+    private final UUID compilationUnitId;
 
     private EndPosTable endPosTable;
     private int cursor = 0;
 
+    /**
+     * The lowest position in the stack of the class type being converted of a symbol that a {@link JavaType.Cyclic}
+     * has referred to since the conversion started. A converted class type that refers to no symbol below it in the
+     * stack is the same wherever it is referred to from, so it can be memoized.
+     */
+    private int lowestCycle = Integer.MAX_VALUE;
+
     public Java11ParserVisitor(Path path, String source, boolean relaxedClassTypeMatching) {
+        this(path, source, relaxedClassTypeMatching, new JavaTypeMemo());
+    }
+
+    Java11ParserVisitor(Path path, String source, boolean relaxedClassTypeMatching, JavaTypeMemo typeMemo) {
+        this(path, source, relaxedClassTypeMatching, typeMemo, null);
+    }
+
+    /**
+     * @param compilationUnitId The id to give the compilation unit, e.g. that of a previous parse of the same
+     *                          source file, or null for a random id.
+     */
+    Java11ParserVisitor(Path path, String source, boolean relaxedClassTypeMatching, JavaTypeMemo typeMemo,
+                        @Nullable UUID compilationUnitId) {
         this.path = path;
         this.source = source;
         this.relaxedClassTypeMatching = relaxedClassTypeMatching;
+        this.typeMemo = typeMemo;
+        this.compilationUnitId = compilationUnitId;
     }
 
     @Override
@@ -94,12 +133,12 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
 
             args = new J.Annotation.Arguments(randomId(), expressions, format(argsPrefix));
         } else {
-            var remaining = source.substring(cursor, endPos(node));
+            var end = endPos(node);
 
             // NOTE: technically, if there is code like this, we have a bug, but seems exceedingly unlikely:
             // @MyAnnotation /* Comment () that contains parentheses */ ()
 
-            if (remaining.contains("(") && remaining.contains(")")) {
+            if (indexOf('(', end) >= 0 && indexOf(')', end) >= 0) {
                 var parenPrefix = sourceBefore("(");
                 args = new J.Annotation.Arguments(randomId(),
                         singletonList(new J.Empty(randomId(), format(sourceBefore(")")))),
@@ -115,9 +154,9 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
     public J visitArrayAccess(ArrayAccessTree node, Formatting fmt) {
         Expression indexed = convert(node.getExpression());
 
-        var dimensionPrefix = sourceBefore("[");
+        var dimensionPrefix = formatBefore("[");
         var dimension = new J.ArrayAccess.Dimension(randomId(), convert(node.getIndex(), t -> sourceBefore("]")),
-                format(dimensionPrefix));
+                dimensionPrefix);
 
         return new J.ArrayAccess(randomId(), indexed, dimension, type(node), fmt);
     }
@@ -135,8 +174,8 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         TypeTree elemType = convert(typeIdent);
 
         var dimensions = IntStream.range(0, dimCount).mapToObj(n -> {
-            var dimPrefix = sourceBefore("[");
-            return new J.ArrayType.Dimension(randomId(), new J.Empty(randomId(), format(sourceBefore("]"))), format(dimPrefix));
+            var dimPrefix = formatBefore("[");
+            return new J.ArrayType.Dimension(randomId(), new J.Empty(randomId(), formatBefore("]")), dimPrefix);
         }).collect(toList());
 
         return new J.ArrayType(randomId(), elemType, dimensions, fmt);
@@ -158,7 +197,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
     public J visitBinary(BinaryTree node, Formatting fmt) {
         Expression left = convert(node.getLeftOperand());
 
-        var opPrefix = format(whitespace());
+        var opPrefix = formatWhitespace();
         J.Binary.Operator op;
         switch (((JCBinary) node).getTag()) {
             case PLUS:
@@ -272,7 +311,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         J.Ident label = null;
         Name labelName = node.getLabel();
         if (labelName != null) {
-            label = J.Ident.build(randomId(), labelName.toString(), null, format(sourceBefore(labelName.toString())));
+            label = J.Ident.build(randomId(), labelName.toString(), null, formatBefore(labelName.toString()));
             skip(labelName.toString());
         }
 
@@ -283,7 +322,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
     public J visitCase(CaseTree node, Formatting fmt) {
         Expression pattern = convertOrNull(node.getExpression(), t -> sourceBefore(":"));
         if (pattern == null) {
-            pattern = J.Ident.build(randomId(), skip("default"), null, format(sourceBefore(":")));
+            pattern = J.Ident.build(randomId(), skip("default"), null, formatBefore(":"));
         }
         return new J.Case(randomId(),
                 pattern,
@@ -310,49 +349,49 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
 
         J.ClassDecl.Kind kind;
         if (hasFlag(node.getModifiers(), Flags.ENUM)) {
-            kind = new J.ClassDecl.Kind.Enum(randomId(), format(sourceBefore("enum")));
+            kind = new J.ClassDecl.Kind.Enum(randomId(), formatBefore("enum"));
         } else if (hasFlag(node.getModifiers(), Flags.ANNOTATION)) {
             // note that annotations ALSO have the INTERFACE flag
-            kind = new J.ClassDecl.Kind.Annotation(randomId(), format(sourceBefore("@interface")));
+            kind = new J.ClassDecl.Kind.Annotation(randomId(), formatBefore("@interface"));
         } else if (hasFlag(node.getModifiers(), Flags.INTERFACE)) {
-            kind = new J.ClassDecl.Kind.Interface(randomId(), format(sourceBefore("interface")));
+            kind = new J.ClassDecl.Kind.Interface(randomId(), formatBefore("interface"));
         } else {
-            kind = new J.ClassDecl.Kind.Class(randomId(), format(sourceBefore("class")));
+            kind = new J.ClassDecl.Kind.Class(randomId(), formatBefore("class"));
         }
 
         var name = J.Ident.build(randomId(), ((JCClassDecl) node).getSimpleName().toString(), type(node),
-                format(sourceBefore(node.getSimpleName().toString())));
+                formatBefore(node.getSimpleName().toString()));
 
         J.TypeParameters typeParams = null;
         if (!node.getTypeParameters().isEmpty()) {
-            var genericPrefix = sourceBefore("<");
+            var genericPrefix = formatBefore("<");
             typeParams = new J.TypeParameters(randomId(), convertAll(node.getTypeParameters(), commaDelim, t -> sourceBefore(">")),
-                    format(genericPrefix));
+                    genericPrefix);
         }
 
         J.ClassDecl.Extends extendings = null;
         if(node.getExtendsClause() != null) {
-            var extendsPrefix = sourceBefore("extends");
+            var extendsPrefix = formatBefore("extends");
             extendings = new J.ClassDecl.Extends(
                     randomId(),
                     convertOrNull(node.getExtendsClause()),
-                    format(extendsPrefix)
+                    extendsPrefix
             );
         }
 
         J.ClassDecl.Implements implementings = null;
         if(node.getImplementsClause() != null && !node.getImplementsClause().isEmpty()) {
-            var implementsPrefix = sourceBefore(kind instanceof J.ClassDecl.Kind.Interface ?
+            var implementsPrefix = formatBefore(kind instanceof J.ClassDecl.Kind.Interface ?
                     "extends" : "implements");
 
             implementings = new J.ClassDecl.Implements(
                     randomId(),
                     convertAll(node.getImplementsClause(), commaDelim, noDelim),
-                    format(implementsPrefix)
+                    implementsPrefix
             );
         }
 
-        var bodyPrefix = sourceBefore("{");
+        var bodyPrefix = formatBefore("{");
 
         // enum values are required by the grammar to occur before any ordinary field, constructor, or method members
         var jcEnums = node.getMembers().stream()
@@ -393,7 +432,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                 convertPossibleMultiVariable(membersMultiVariablesSeparated).stream()
         ).collect(toList());
 
-        var body = new J.Block<>(randomId(), null, members, format(bodyPrefix), sourceBefore("}"));
+        var body = new J.Block<>(randomId(), null, members, bodyPrefix, sourceBefore("}"));
 
         return new J.ClassDecl(randomId(), annotations, modifiers, kind, name, typeParams, extendings, implementings, body, type(node), fmt);
     }
@@ -403,8 +442,8 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         logger.debug("Building AST for: " + path);
 
         JCCompilationUnit cu = (JCCompilationUnit) node;
-        var prefix = source.substring(0, cu.getStartPosition());
-        cursor(cu.getStartPosition());
+        var prefixEnd = cu.getStartPosition();
+        cursor(prefixEnd);
 
         endPosTable = cu.endPositions;
 
@@ -414,10 +453,10 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         J.Package packageDecl = null;
         if (cu.getPackageName() != null) {
             skip("package");
-            packageDecl = new J.Package(randomId(), convert(cu.getPackageName()), format(sourceBefore(";")));
+            packageDecl = new J.Package(randomId(), convert(cu.getPackageName()), formatBefore(";"));
         }
 
-        return new J.CompilationUnit(randomId(),
+        return new J.CompilationUnit(compilationUnitId == null ? randomId() : compilationUnitId,
                 path.toString(),
                 emptyMap(),
                 packageDecl,
@@ -426,7 +465,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                                 .filter(JCClassDecl.class::isInstance)
                                 .collect(toList()),
                         this::whitespace, noDelim),
-                format(prefix, source.substring(cursor))
+                format(source, 0, prefixEnd, source.substring(cursor))
         );
     }
 
@@ -434,7 +473,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
     public J visitCompoundAssignment(CompoundAssignmentTree node, Formatting fmt) {
         Expression left = convert(((JCAssignOp) node).lhs);
 
-        var opPrefix = format(whitespace());
+        var opPrefix = formatWhitespace();
         J.AssignOp.Operator op;
         switch (((JCAssignOp) node).getTag()) {
             case PLUS_ASG:
@@ -510,7 +549,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         skip("continue");
         Name label = node.getLabel();
         return new J.Continue(randomId(),
-                label == null ? null : J.Ident.build(randomId(), label.toString(), null, format(sourceBefore(label.toString()))),
+                label == null ? null : J.Ident.build(randomId(), label.toString(), null, formatBefore(label.toString())),
                 fmt
         );
     }
@@ -519,10 +558,10 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
     public J visitDoWhileLoop(DoWhileLoopTree node, Formatting fmt) {
         skip("do");
         Statement stat = convert(node.getStatement());
-        var whilePrefix = sourceBefore("while");
+        var whilePrefix = formatBefore("while");
         return new J.DoWhileLoop(randomId(),
                 stat,
-                new J.DoWhileLoop.While(randomId(), convert(node.getCondition()), format(whilePrefix)),
+                new J.DoWhileLoop.While(randomId(), convert(node.getCondition()), whilePrefix),
                 fmt
         );
     }
@@ -609,8 +648,8 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
 
         J.If.Else elsePart = null;
         if (node.getElseStatement() instanceof JCTree.JCStatement) {
-            var elsePrefix = sourceBefore("else");
-            elsePart = new J.If.Else(randomId(), convert(node.getElseStatement(), statementDelim), format(elsePrefix));
+            var elsePrefix = formatBefore("else");
+            elsePart = new J.If.Else(randomId(), convert(node.getElseStatement(), statementDelim), elsePrefix);
         }
 
         return new J.If(randomId(), ifPart, then, elsePart, fmt);
@@ -619,7 +658,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
     @Override
     public J visitImport(ImportTree node, Formatting fmt) {
         skip("import");
-        skipPattern("\\s+static");
+        skipPattern(STATIC_IMPORT);
         return new J.Import(randomId(), convert(node.getQualifiedIdentifier()), node.isStatic(), fmt);
     }
 
@@ -657,7 +696,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         }
 
         var params = new J.Lambda.Parameters(randomId(), parenthesized, paramList);
-        var arrow = new J.Lambda.Arrow(randomId(), format(sourceBefore("->")));
+        var arrow = new J.Lambda.Arrow(randomId(), formatBefore("->"));
 
         J body;
         if (node.getBody() instanceof JCTree.JCBlock) {
@@ -708,7 +747,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         }
 
         var typeParams = convertTypeParameters(node.getTypeArguments());
-        var reference = J.Ident.build(randomId(), referenceName, null, format(sourceBefore(referenceName)));
+        var reference = J.Ident.build(randomId(), referenceName, null, formatBefore(referenceName));
 
         return new J.MemberReference(randomId(), expr, typeParams, reference, type(node), fmt);
     }
@@ -717,7 +756,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
     public J visitMemberSelect(MemberSelectTree node, Formatting fmt) {
         JCFieldAccess fieldAccess = (JCFieldAccess) node;
         Expression target = convert(fieldAccess.selected, t -> sourceBefore("."));
-        var name = J.Ident.build(randomId(), fieldAccess.name.toString(), null, format(sourceBefore(fieldAccess.name.toString())));
+        var name = J.Ident.build(randomId(), fieldAccess.name.toString(), null, formatBefore(fieldAccess.name.toString()));
         return new J.FieldAccess(randomId(), target, name, type(node), fmt);
     }
 
@@ -735,18 +774,18 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         // generic type parameters can only exist on qualified targets
         J.MethodInvocation.TypeParameters typeParams = null;
         if (!node.getTypeArguments().isEmpty()) {
-            var genericPrefix = sourceBefore("<");
+            var genericPrefix = formatBefore("<");
             List<Expression> genericParams = convertAll(node.getTypeArguments(), commaDelim, t -> sourceBefore(">"));
             typeParams = new J.TypeParameters(randomId(), genericParams.stream()
                     .map(gp -> new J.TypeParameter(randomId(), emptyList(), gp.withFormatting(EMPTY), null, gp.getFormatting()))
                     .collect(toList()),
-                    format(genericPrefix));
+                    genericPrefix);
         }
 
         J.Ident name;
         if (jcSelect instanceof JCFieldAccess) {
             String selectName = ((JCFieldAccess) jcSelect).name.toString();
-            name = J.Ident.build(randomId(), selectName, null, format(sourceBefore(selectName)));
+            name = J.Ident.build(randomId(), selectName, null, formatBefore(selectName));
         } else {
             name = convert(jcSelect);
         }
@@ -766,6 +805,10 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
 
         JavaType.Method type = null;
         if (genericSymbol != null && jcSelect.type != null) {
+            type = typeMemo.methodType(genericSymbol, name.getSimpleName(), jcSelect.type);
+        }
+
+        if (type == null && genericSymbol != null && jcSelect.type != null) {
             Function<com.sun.tools.javac.code.Type, JavaType.Method.Signature> signature = t -> {
                 if (t instanceof com.sun.tools.javac.code.Type.MethodType) {
                     com.sun.tools.javac.code.Type.MethodType mt = (com.sun.tools.javac.code.Type.MethodType) t;
@@ -790,6 +833,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                     genericSymbol.params().stream().map(p -> p.name.toString()).collect(toList()),
                     filteredFlags(genericSymbol)
             );
+            typeMemo.methodType(genericSymbol, name.getSimpleName(), jcSelect.type, type);
         }
 
         return new J.MethodInvocation(randomId(), select, typeParams, name, args, type, fmt);
@@ -805,9 +849,9 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         // see https://docs.oracle.com/javase/tutorial/java/generics/methods.html
         J.TypeParameters typeParams = null;
         if (!node.getTypeParameters().isEmpty()) {
-            var genericPrefix = sourceBefore("<");
+            var genericPrefix = formatBefore("<");
             typeParams = new J.TypeParameters(randomId(), convertAll(node.getTypeParameters(), commaDelim, t -> sourceBefore(">")),
-                    format(genericPrefix));
+                    genericPrefix);
         }
 
         TypeTree returnType = convertOrNull(node.getReturnType());
@@ -823,9 +867,9 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                             .map(cd -> cd.getSimpleName().toString())
                             .orElseThrow() :
                     ((Symbol.ClassSymbol) ((JCMethodDecl) node).sym.owner).name.toString();
-            name = J.Ident.build(randomId(), owner, null, format(sourceBefore(owner)));
+            name = J.Ident.build(randomId(), owner, null, formatBefore(owner));
         } else {
-            name = J.Ident.build(randomId(), node.getName().toString(), null, format(sourceBefore(node.getName().toString())));
+            name = J.Ident.build(randomId(), node.getName().toString(), null, formatBefore(node.getName().toString()));
         }
 
         var paramFmt = format(sourceBefore("("));
@@ -835,16 +879,16 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
 
         J.MethodDecl.Throws throwss = null;
         if (!node.getThrows().isEmpty()) {
-            var throwsPrefix = sourceBefore("throws");
-            throwss = new J.MethodDecl.Throws(randomId(), convertAll(node.getThrows(), commaDelim, noDelim), format(throwsPrefix));
+            var throwsPrefix = formatBefore("throws");
+            throwss = new J.MethodDecl.Throws(randomId(), convertAll(node.getThrows(), commaDelim, noDelim), throwsPrefix);
         }
 
         J.Block<Statement> body = convertOrNull(node.getBody());
 
         J.MethodDecl.Default defaultValue = null;
         if (node.getDefaultValue() != null) {
-            var defaultPrefix = sourceBefore("default");
-            defaultValue = new J.MethodDecl.Default(randomId(), convert(node.getDefaultValue()), format(defaultPrefix));
+            var defaultPrefix = formatBefore("default");
+            defaultValue = new J.MethodDecl.Default(randomId(), convert(node.getDefaultValue()), defaultPrefix);
         }
 
         return new J.MethodDecl(randomId(), annotations, modifiers, typeParams, returnType, name, params, throwss, body, defaultValue, fmt);
@@ -876,7 +920,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                     format(dimensionPrefix, (i == node.getDimensions().size() - 1 && node.getInitializers() != null) ? sourceBefore("}") : "")));
         }
 
-        var matcher = Pattern.compile("\\G(\\s*)\\[(\\s*)]").matcher(source);
+        var matcher = DIMENSION.matcher(source);
         while (matcher.find(cursor)) {
             cursor(matcher.end());
             var ws = new J.Empty(randomId(), format(matcher.group(2)));
@@ -885,11 +929,11 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
 
         J.NewArray.Initializer initializer = null;
         if (node.getInitializers() != null) {
-            var initPrefix = sourceBefore("{");
+            var initPrefix = formatBefore("{");
             List<Expression> initializers = node.getInitializers().isEmpty() ?
                     singletonList(new J.Empty(randomId(), format("", sourceBefore("}")))) :
                     convertAll(node.getInitializers(), commaDelim, t -> sourceBefore("}"));
-            initializer = new J.NewArray.Initializer(randomId(), initializers, format(initPrefix));
+            initializer = new J.NewArray.Initializer(randomId(), initializers, initPrefix);
         }
 
         return new J.NewArray(randomId(), typeExpr, dimensions, initializer, type(node), fmt);
@@ -914,7 +958,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
 
         J.Block<?> body = null;
         if (node.getClassBody() != null) {
-            var bodyPrefix = sourceBefore("{");
+            var bodyPrefix = formatBefore("{");
 
             var members = convertAll(node.getClassBody().getMembers().stream()
                     // we don't care about the compiler-inserted default constructor,
@@ -922,7 +966,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                     .filter(m -> !(m instanceof JCMethodDecl) || (((JCMethodDecl) m).getModifiers().flags & Flags.GENERATEDCONSTR) == 0L)
                     .collect(toList()), noDelim, noDelim);
 
-            body = new J.Block<>(randomId(), null, members, format(bodyPrefix), sourceBefore("}"));
+            body = new J.Block<>(randomId(), null, members, bodyPrefix, sourceBefore("}"));
         }
 
         return new J.NewClass(randomId(), clazz, args, body, type(((JCNewClass) node).type), fmt);
@@ -990,10 +1034,10 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         skip("switch");
         J.Parentheses<Expression> selector = convert(node.getExpression());
 
-        var casePrefix = sourceBefore("{");
+        var casePrefix = formatBefore("{");
         List<J.Case> cases = convertAll(node.getCases(), noDelim, noDelim);
 
-        return new J.Switch(randomId(), selector, new J.Block<>(randomId(), null, cases, format(casePrefix), sourceBefore("}")), fmt);
+        return new J.Switch(randomId(), selector, new J.Block<>(randomId(), null, cases, casePrefix, sourceBefore("}")), fmt);
     }
 
     @Override
@@ -1027,9 +1071,9 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
 
         J.Try.Finally finallyy = null;
         if (node.getFinallyBlock() != null) {
-            var finallyPrefix = sourceBefore("finally");
+            var finallyPrefix = formatBefore("finally");
             finallyy = new J.Try.Finally(randomId(), convert(node.getFinallyBlock()),
-                    format(finallyPrefix));
+                    finallyPrefix);
         }
 
         return new J.Try(randomId(), resources, block, catches, finallyy, fmt);
@@ -1054,7 +1098,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
     public J visitTypeParameter(TypeParameterTree node, Formatting fmt) {
         List<J.Annotation> annotations = convertAll(node.getAnnotations(), noDelim, noDelim);
 
-        var name = TreeBuilder.buildName(node.getName().toString(), format(sourceBefore(node.getName().toString())));
+        var name = TreeBuilder.buildName(node.getName().toString(), formatBefore(node.getName().toString()));
 
         J.TypeParameter.Bounds bounds = null;
         if (!node.getBounds().isEmpty()) {
@@ -1102,11 +1146,11 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                 break;
             case POSTDEC:
                 expr = convert(unary.arg);
-                op = new J.Unary.Operator.PostDecrement(randomId(), format(sourceBefore("--")));
+                op = new J.Unary.Operator.PostDecrement(randomId(), formatBefore("--"));
                 break;
             case POSTINC:
                 expr = convert(unary.arg);
-                op = new J.Unary.Operator.PostIncrement(randomId(), format(sourceBefore("++")));
+                op = new J.Unary.Operator.PostIncrement(randomId(), formatBefore("++"));
                 break;
             case COMPL:
                 skip("~");
@@ -1160,7 +1204,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         }
 
         Supplier<List<J.VariableDecls.Dimension>> dimensions = () -> {
-            var matcher = Pattern.compile("\\G(\\s*)\\[(\\s*)]").matcher(source);
+            var matcher = DIMENSION.matcher(source);
             List<J.VariableDecls.Dimension> dims = new ArrayList<>();
             while (matcher.find(cursor)) {
                 cursor(matcher.end());
@@ -1172,11 +1216,10 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
 
         var beforeDimensions = dimensions.get();
 
-        var vartypeString = typeExpr == null ? "" : source.substring(vartype.getStartPosition(), endPos(vartype));
-        var varargMatcher = Pattern.compile("(\\s*)\\.{3}").matcher(vartypeString);
+        var varargMatcher = VARARGS.matcher(source);
         J.VariableDecls.Varargs varargs = null;
-        if (varargMatcher.find()) {
-            skipPattern("(\\s*)\\.{3}");
+        if (typeExpr != null && varargMatcher.region(vartype.getStartPosition(), endPos(vartype)).find()) {
+            skipPattern(VARARGS_AT_CURSOR);
             varargs = new J.VariableDecls.Varargs(randomId(), format(varargMatcher.group(1)));
         }
 
@@ -1229,10 +1272,10 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         J.Wildcard.Bound bound;
         switch (wildcard.kind.kind) {
             case EXTENDS:
-                bound = new J.Wildcard.Bound.Extends(randomId(), format(sourceBefore("extends")));
+                bound = new J.Wildcard.Bound.Extends(randomId(), formatBefore("extends"));
                 break;
             case SUPER:
-                bound = new J.Wildcard.Bound.Super(randomId(), format(sourceBefore("super")));
+                bound = new J.Wildcard.Bound.Super(randomId(), formatBefore("super"));
                 break;
             case UNBOUND:
             default:
@@ -1254,9 +1297,11 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
 
     private <T extends J> T convert(Tree t2, Function<Tree, String> suffix) {
         try {
-            var prefix = source.substring(cursor, max(((JCTree) t2).getStartPosition(), cursor));
-            cursor += prefix.length();
-            @SuppressWarnings("unchecked") T t = (T) scan(t2, format(prefix));
+            // a prefix with comments in it refers to the source rather than copying out of it
+            var prefixEnd = max(((JCTree) t2).getStartPosition(), cursor);
+            var prefix = format(source, cursor, prefixEnd);
+            cursor = prefixEnd;
+            @SuppressWarnings("unchecked") T t = (T) scan(t2, prefix);
             if (t != null) {
                 t = t.withSuffix(suffix.apply(t2));
             }
@@ -1316,7 +1361,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
             return null;
         }
 
-        var typeArgPrefix = sourceBefore("<");
+        var typeArgPrefix = formatBefore("<");
         List<Expression> typeArgs;
         if (typeArguments.isEmpty()) {
             // raw type, see http://docs.oracle.com/javase/tutorial/java/generics/rawTypes.html
@@ -1331,7 +1376,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         return new J.TypeParameters(randomId(), typeArgs.stream()
                 .map(gp -> new J.TypeParameter(randomId(), emptyList(), gp.withFormatting(EMPTY), null, gp.getFormatting()))
                 .collect(toList()),
-                format(typeArgPrefix));
+                typeArgPrefix);
     }
 
     private final Function<Tree, String> statementDelim = (@Nullable Tree t) -> {
@@ -1369,13 +1414,14 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                         return (T) convert(treeGroup.get(0), statementDelim);
                     } else {
                         // multi-variable declarations are split into independent overlapping JCVariableDecl's by the OpenJDK AST
-                        var prefix = source.substring(cursor, max(((JCTree) treeGroup.get(0)).getStartPosition(), cursor));
-                        cursor += prefix.length();
+                        var prefixEnd = max(((JCTree) treeGroup.get(0)).getStartPosition(), cursor);
+                        var prefix = format(source, cursor, prefixEnd);
+                        cursor(prefixEnd);
 
                         var last = treeGroup.get(treeGroup.size() - 1);
 
                         @SuppressWarnings("unchecked")
-                        J.VariableDecls vars = visitVariables((List<VariableTree>) treeGroup, format(prefix));
+                        J.VariableDecls vars = visitVariables((List<VariableTree>) treeGroup, prefix);
                         vars = vars.withSuffix(semiDelim.apply(last));
                         cursor(max(endPos(last), cursor));
                         return (T) vars;
@@ -1435,12 +1481,38 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         if (type instanceof com.sun.tools.javac.code.Type.ClassType) {
             var sym = (Symbol.ClassSymbol) type.tsym;
 
-            if (stack.contains(sym))
+            int cycle = stack.indexOf(sym);
+            if (cycle >= 0) {
+                lowestCycle = Math.min(lowestCycle, cycle);
                 return new JavaType.Cyclic(sym.className());
-            else {
+            } else {
                 if (shallow) {
                     return new JavaType.ShallowClass(sym.className());
                 } else {
+                    JavaType memoized = typeMemo.classType(type);
+                    if (memoized != null) {
+                        return memoized;
+                    }
+
+                    var classType = (com.sun.tools.javac.code.Type.ClassType) type;
+                    String jar = null;
+                    if ((classType.typarams_field == null || classType.typarams_field.isEmpty()) &&
+                            sym.classfile != null && sym.classfile.getKind() == JavaFileObject.Kind.CLASS) {
+                        jar = JavaTypeMemo.jarOf(sym.classfile);
+                    }
+
+                    if (jar != null) {
+                        // a stored type is only as complete as the symbol it was converted from was at the time
+                        JavaType.Class stored = typeMemo.storedClasspathType(jar, sym.className());
+                        if (stored != null && (sym.members_field == null ||
+                                ClasspathTypeStore.completeness(stored) >= completeness(sym, classType))) {
+                            return stored;
+                        }
+                    }
+
+                    int outerLowestCycle = lowestCycle;
+                    lowestCycle = Integer.MAX_VALUE;
+
                     List<Symbol> stackWithSym = new ArrayList<>(stack);
                     stackWithSym.add(sym);
 
@@ -1454,14 +1526,24 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                             ))
                             .collect(toList());
 
-                    var classType = (com.sun.tools.javac.code.Type.ClassType) type;
                     var symType = (com.sun.tools.javac.code.Type.ClassType) sym.type;
-                    return JavaType.Class.build(sym.className(), fields,
+                    JavaType.Class converted = JavaType.Class.build(sym.className(), fields,
                             classType.typarams_field == null ? emptyList() : classType.typarams_field.stream().map(tParam -> type(tParam, stackWithSym, true)).filter(Objects::nonNull).collect(toList()),
                             symType.interfaces_field == null ? emptyList() : symType.interfaces_field.stream().map(iParam -> type(iParam, stackWithSym, false)).filter(Objects::nonNull).collect(toList()),
                             null,
                             TypeUtils.asClass(type(classType.supertype_field, stackWithSym)),
                             relaxedClassTypeMatching);
+
+                    if (lowestCycle >= stack.size()) {
+                        typeMemo.classType(type, converted);
+
+                        // with relaxed matching, the type that was built may be a variant converted from another jar
+                        if (jar != null && sym.members_field != null && !relaxedClassTypeMatching) {
+                            typeMemo.convertedClasspathType(jar, converted);
+                        }
+                    }
+                    lowestCycle = Math.min(outerLowestCycle, lowestCycle);
+                    return converted;
                 }
             }
         } else if (type instanceof com.sun.tools.javac.code.Type.TypeVar) {
@@ -1477,6 +1559,28 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         }
     }
 
+    /**
+     * @return The {@link ClasspathTypeStore#completeness(JavaType.Class)} of what a completed class symbol would
+     * be converted to.
+     */
+    private static int completeness(Symbol.ClassSymbol sym, com.sun.tools.javac.code.Type.ClassType classType) {
+        int completeness = 0;
+        for (Symbol member : sym.members_field.getSymbols()) {
+            if (member instanceof Symbol.VarSymbol) {
+                completeness++;
+            }
+        }
+
+        var symType = (com.sun.tools.javac.code.Type.ClassType) sym.type;
+        if (symType.interfaces_field != null) {
+            completeness += symType.interfaces_field.size();
+        }
+        if (classType.supertype_field instanceof com.sun.tools.javac.code.Type.ClassType) {
+            completeness++;
+        }
+        return completeness;
+    }
+
     @Nullable
     private JavaType type(Tree t) {
         return type(((JCTree) t).type);
@@ -1539,7 +1643,22 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         }
 
         var prefix = source.substring(cursor, delimIndex);
-        cursor += prefix.length() + untilDelim.length(); // advance past the delimiter
+        cursor(delimIndex + untilDelim.length()); // advance past the delimiter
+        return prefix;
+    }
+
+    /**
+     * Like {@link #sourceBefore(String)}, but the prefix is never copied out of the source unless the formatting
+     * has to hold on to it.
+     */
+    private Formatting formatBefore(String untilDelim) {
+        var delimIndex = positionOfNext(untilDelim, null);
+        if (delimIndex < 0) {
+            return EMPTY; // unable to find this delimiter
+        }
+
+        var prefix = format(source, cursor, delimIndex);
+        cursor(delimIndex + untilDelim.length()); // advance past the delimiter
         return prefix;
     }
 
@@ -1547,25 +1666,26 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         var inMultiLineComment = false;
         var inSingleLineComment = false;
 
+        var length = source.length();
+        var delimLength = untilDelim.length();
+
         var delimIndex = cursor;
-        for (; delimIndex < source.length() - untilDelim.length() + 1; delimIndex++) {
-            if (inSingleLineComment && source.charAt(delimIndex) == '\n') {
+        for (; delimIndex < length - delimLength + 1; delimIndex++) {
+            var c = source.charAt(delimIndex);
+            if (inSingleLineComment && c == '\n') {
                 inSingleLineComment = false;
             } else {
-                if (source.length() - untilDelim.length() > delimIndex + 1) {
-                    switch (source.substring(delimIndex, delimIndex + 2)) {
-                        case "//":
-                            inSingleLineComment = true;
-                            delimIndex++;
-                            break;
-                        case "/*":
-                            inMultiLineComment = true;
-                            delimIndex++;
-                            break;
-                        case "*/":
-                            inMultiLineComment = false;
-                            delimIndex++;
-                            break;
+                if (length - delimLength > delimIndex + 1) {
+                    var next = source.charAt(delimIndex + 1);
+                    if (c == '/' && next == '/') {
+                        inSingleLineComment = true;
+                        delimIndex++;
+                    } else if (c == '/' && next == '*') {
+                        inMultiLineComment = true;
+                        delimIndex++;
+                    } else if (c == '*' && next == '/') {
+                        inMultiLineComment = false;
+                        delimIndex++;
                     }
                 }
 
@@ -1573,14 +1693,14 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                     if (stop != null && source.charAt(delimIndex) == stop)
                         return -1; // reached stop word before finding the delimiter
 
-                    if (source.substring(delimIndex, delimIndex + untilDelim.length()).equals(untilDelim)) {
+                    if (source.startsWith(untilDelim, delimIndex)) {
                         break; // found it!
                     }
                 }
             }
         }
 
-        return delimIndex > source.length() - untilDelim.length() ? -1 : delimIndex;
+        return delimIndex > length - delimLength ? -1 : delimIndex;
     }
 
     private final Function<Tree, String> semiDelim = ignored -> sourceBefore(";");
@@ -1592,55 +1712,91 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
     }
 
     private String whitespace(@Nullable Tree t) {
+        var delimIndex = positionOfNextNonWhitespace();
+        var prefix = source.substring(cursor, delimIndex);
+        cursor(delimIndex);
+        return prefix;
+    }
+
+    /**
+     * @return Formatting whose prefix is the whitespace and comments from <code>cursor</code> to the next token,
+     * which is only copied out of the source if it is whitespace alone.
+     */
+    private Formatting formatWhitespace() {
+        var delimIndex = positionOfNextNonWhitespace();
+        var prefix = format(source, cursor, delimIndex);
+        cursor(delimIndex);
+        return prefix;
+    }
+
+    /**
+     * @return The position of the first character at or after <code>cursor</code> that is neither whitespace nor
+     * part of a comment, or the length of the source if there is none.
+     */
+    private int positionOfNextNonWhitespace() {
         var inMultiLineComment = false;
         var inSingleLineComment = false;
 
+        var length = source.length();
+
         int delimIndex = cursor;
-        for (; delimIndex < source.length(); delimIndex++) {
-            if (inSingleLineComment && (source.charAt(delimIndex) == '\n' || source.charAt(delimIndex) == '\r')) {
+        for (; delimIndex < length; delimIndex++) {
+            var c = source.charAt(delimIndex);
+            if (inSingleLineComment && (c == '\n' || c == '\r')) {
                 inSingleLineComment = false;
             } else {
-                if (source.length() > delimIndex + 1) {
-                    switch (source.substring(delimIndex, delimIndex + 2)) {
-                        case "//":
-                            inSingleLineComment = true;
-                            delimIndex++;
-                            continue;
-                        case "/*":
-                            inMultiLineComment = true;
-                            delimIndex++;
-                            continue;
-                        case "*/":
-                            inMultiLineComment = false;
-                            delimIndex++;
-                            continue;
+                if (length > delimIndex + 1) {
+                    var next = source.charAt(delimIndex + 1);
+                    if (c == '/' && next == '/') {
+                        inSingleLineComment = true;
+                        delimIndex++;
+                        continue;
+                    } else if (c == '/' && next == '*') {
+                        inMultiLineComment = true;
+                        delimIndex++;
+                        continue;
+                    } else if (c == '*' && next == '/') {
+                        inMultiLineComment = false;
+                        delimIndex++;
+                        continue;
                     }
                 }
 
                 if (!inMultiLineComment && !inSingleLineComment) {
-                    if (!Character.isWhitespace(source.substring(delimIndex, delimIndex + 1).charAt(0))) {
+                    if (!Character.isWhitespace(c)) {
                         break; // found it!
                     }
                 }
             }
         }
 
-        String prefix = source.substring(cursor, delimIndex);
-        cursor += prefix.length();
-        return prefix;
+        return delimIndex;
+    }
+
+    /**
+     * @return The position of the first occurrence of <code>c</code> between <code>cursor</code> and
+     * <code>end</code>, or -1 if there is none.
+     */
+    private int indexOf(char c, int end) {
+        for (int i = cursor; i < end; i++) {
+            if (source.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     @Nullable
     private String skip(@Nullable String token) {
         if (token == null)
             return null;
-        if (source.substring(cursor, cursor + token.length()).equals(token))
+        if (source.startsWith(token, cursor))
             cursor += token.length();
         return token;
     }
 
-    private void skipPattern(String pattern) {
-        var matcher = Pattern.compile("\\G" + pattern).matcher(source);
+    private void skipPattern(Pattern pattern) {
+        var matcher = pattern.matcher(source);
         if (matcher.find(cursor)) {
             cursor(matcher.end());
         }
@@ -1696,7 +1852,7 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
         var sortedModifiers = new ArrayList<Modifier>();
 
         var inComment = false;
-        final var word = new AtomicReference<>("");
+        var wordStart = -1;
         for (int i = cursor; i < source.length(); i++) {
             var c = source.charAt(i);
             if (c == '/' && source.length() > i + 1 && source.charAt(i + 1) == '*') {
@@ -1707,29 +1863,23 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                 inComment = false;
             } else if (!inComment) {
                 if (Character.isWhitespace(c)) {
-                    if (!word.get().isEmpty()) {
-                        Optional<Modifier> matching = modifiers.getFlags().stream()
-                                .filter(mod -> mod.name().toLowerCase().equals(word.get()))
-                                .findAny();
-
-                        matching.ifPresent(mod -> {
-                            sortedModifiers.add(mod);
-                            word.set("");
-                        });
-
-                        if (matching.isEmpty()) {
+                    if (wordStart >= 0) {
+                        var matching = modifierAt(modifiers, wordStart, i);
+                        if (matching == null) {
                             break;
                         }
+                        sortedModifiers.add(matching);
+                        wordStart = -1;
                     }
-                } else {
-                    word.getAndUpdate(w -> w + c);
+                } else if (wordStart < 0) {
+                    wordStart = i;
                 }
             }
         }
 
         return sortedModifiers.stream()
                 .map(mod -> {
-                    var modFormat = format(whitespace());
+                    var modFormat = formatWhitespace();
                     cursor += mod.name().length();
                     switch (mod) {
                         case DEFAULT:
@@ -1762,4 +1912,19 @@ public class Java11ParserVisitor extends TreePathScanner<J, Formatting> {
                 })
                 .collect(toList());
     }
+
+    /**
+     * @return The modifier whose keyword is the source between <code>start</code> and <code>end</code>, if it is
+     * one of the modifiers in the AST.
+     */
+    @Nullable
+    private Modifier modifierAt(ModifiersTree modifiers, int start, int end) {
+        for (Modifier mod : modifiers.getFlags()) {
+            var keyword = MODIFIER_KEYWORDS.get(mod);
+            if (keyword.length() == end - start && source.startsWith(keyword, start)) {
+                return mod;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits source files into batches that can be parsed one after the other, each against the symbols entered by the
+ * batches before it. Every source file is in the same batch as, or a later batch than, the source files it could
+ * refer to, so source files that refer to each other in a cycle always end up in the same batch, however big that
+ * makes it.
+ * <p>
+ * Which source files a source file could refer to is judged from its text, without parsing it. A source file is
+ * taken to refer to another one if it mentions the other's file name as a simple name, and that name is either
+ * qualified by the other's package, or is unqualified and the other is in the same package or a package that it
+ * imports on demand. Mentions in comments and string literals count too, which only ever makes a batch bigger. Types
+ * that are declared by a source file of a different name aren't seen.
+ */
+final class JavaSourceBatches {
+    private static final Pattern PACKAGE = Pattern.compile("(?:^|\\*/)\\s*package\\s+([\\w.\\s]+?)\\s*;", Pattern.MULTILINE);
+    private static final Pattern IMPORT_ON_DEMAND = Pattern.compile("(?:^|;)\\s*import\\s+([\\w.\\s]+?)\\s*\\.\\s*\\*\\s*;", Pattern.MULTILINE);
+
+    private JavaSourceBatches() {
+    }
+
+    /**
+     * @param sourceFiles Java source files, already read, so that the text a batch is judged by is the text it is
+     *                    parsed from.
+     * @param batchSize   The number of source files in a batch, which a batch only exceeds to keep a cycle together.
+     * @return The batches, in the order they are to be parsed in.
+     */
+    static List<List<JavaParser.Input>> of(List<JavaParser.Input> sourceFiles, int batchSize) {
+        Map<String, List<Integer>> bySimpleName = new HashMap<>();
+        for (int i = 0; i < sourceFiles.size(); i++) {
+            var fileName = sourceFiles.get(i).getPath().getFileName().toString();
+            bySimpleName.computeIfAbsent(fileName.substring(0, fileName.length() - ".java".length()), n -> new ArrayList<>())
+                    .add(i);
+        }
+
+        var packages = new String[sourceFiles.size()];
+        List<Set<String>> importedPackages = new ArrayList<>(sourceFiles.size());
+        List<Map<String, Set<String>>> mentions = new ArrayList<>(sourceFiles.size());
+        for (int i = 0; i < sourceFiles.size(); i++) {
+            var source = sourceFiles.get(i).getSource();
+
+            Matcher packageMatcher = PACKAGE.matcher(source);
+            packages[i] = packageMatcher.find() ? withoutWhitespace(packageMatcher.group(1)) : "";
+
+            Set<String> imported = new HashSet<>();
+            Matcher importMatcher = IMPORT_ON_DEMAND.matcher(source);
+            while (importMatcher.find()) {
+                imported.add(withoutWhitespace(importMatcher.group(1)));
+            }
+            importedPackages.add(imported);
+
+            mentions.add(mentions(source, bySimpleName.keySet()));
+        }
+
+        List<int[]> dependencies = new ArrayList<>(sourceFiles.size());
+        for (int i = 0; i < sourceFiles.size(); i++) {
+            Set<Integer> dependsOn = new TreeSet<>();
+            for (Map.Entry<String, Set<String>> mention : mentions.get(i).entrySet()) {
+                Set<String> qualifiers = mention.getValue();
+                for (int j : bySimpleName.get(mention.getKey())) {
+                    if (j != i && (qualifiers.contains(packages[j]) || qualifiers.contains("") &&
+                            (packages[j].equals(packages[i]) || importedPackages.get(i).contains(packages[j])))) {
+                        dependsOn.add(j);
+                    }
+                }
+            }
+            dependencies.add(dependsOn.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        List<List<JavaParser.Input>> batches = new ArrayList<>();
+        List<JavaParser.Input> batch = new ArrayList<>();
+        for (List<Integer> component : stronglyConnected(dependencies)) {
+            Collections.sort(component);
+            for (int i : component) {
+                batch.add(sourceFiles.get(i));
+            }
+            if (batch.size() >= batchSize) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        return batches;
+    }
+
+    /**
+     * @return The names in the source that are among the given simple names, each with the qualifiers it is
+     * mentioned with, where an unqualified mention has the empty qualifier.
+     */
+    private static Map<String, Set<String>> mentions(CharSequence source, Set<String> simpleNames) {
+        Map<String, Set<String>> mentions = new HashMap<>();
+        var length = source.length();
+        for (int i = 0; i < length; ) {
+            if (!Character.isJavaIdentifierStart(source.charAt(i))) {
+                i++;
+                continue;
+            }
+
+            var start = i;
+            while (i < length && Character.isJavaIdentifierPart(source.charAt(i))) {
+                i++;
+            }
+
+            var name = source.subSequence(start, i).toString();
+            if (simpleNames.contains(name)) {
+                var qualifier = "";
+                if (start > 0 && source.charAt(start - 1) == '.') {
+                    var qualifierStart = start - 1;
+                    while (qualifierStart > 0 && (Character.isJavaIdentifierPart(source.charAt(qualifierStart - 1)) ||
+                            source.charAt(qualifierStart - 1) == '.')) {
+                        qualifierStart--;
+                    }
+                    qualifier = source.subSequence(qualifierStart, start - 1).toString();
+                }
+                mentions.computeIfAbsent(name, n -> new HashSet<>()).add(qualifier);
+            }
+        }
+        return mentions;
+    }
+
+    /**
+     * Tarjan's algorithm, without recursion so that long chains of dependencies can't overflow the stack.
+     *
+     * @param dependencies The source files that each source file depends on, by index.
+     * @return The strongly connected components, each after every component that it depends on.
+     */
+    private static List<List<Integer>> stronglyConnected(List<int[]> dependencies) {
+        var count = dependencies.size();
+        var index = new int[count];
+        Arrays.fill(index, -1);
+        var lowLink = new int[count];
+        var nextDependency = new int[count];
+        var onStack = new boolean[count];
+
+        Deque<Integer> stack = new ArrayDeque<>();
+        Deque<Integer> visiting = new ArrayDeque<>();
+        List<List<Integer>> components = new ArrayList<>();
+
+        var nextIndex = 0;
+        for (int root = 0; root < count; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+
+            index[root] = lowLink[root] = nextIndex++;
+            stack.push(root);
+            onStack[root] = true;
+            visiting.push(root);
+
+            while (!visiting.isEmpty()) {
+                int v = visiting.peek();
+                var dependsOn = dependencies.get(v);
+                if (nextDependency[v] < dependsOn.length) {
+                    var w = dependsOn[nextDependency[v]++];
+                    if (index[w] < 0) {
+                        index[w] = lowLink[w] = nextIndex++;
+                        stack.push(w);
+                        onStack[w] = true;
+                        visiting.push(w);
+                    } else if (onStack[w]) {
+                        lowLink[v] = Math.min(lowLink[v], index[w]);
+                    }
+                    continue;
+                }
+
+                visiting.pop();
+                if (!visiting.isEmpty()) {
+                    int u = visiting.peek();
+                    lowLink[u] = Math.min(lowLink[u], lowLink[v]);
+                }
+
+                if (lowLink[v] == index[v]) {
+                    List<Integer> component = new ArrayList<>();
+                    int w;
+                    do {
+                        w = stack.pop();
+                        onStack[w] = false;
+                        component.add(w);
+                    } while (w != v);
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    private static String withoutWhitespace(String name) {
+        return name.replaceAll("\\s", "");
+    }
+}
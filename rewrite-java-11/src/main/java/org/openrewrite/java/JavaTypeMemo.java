@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.code.Type;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.JavaType;
+
+import javax.tools.JavaFileObject;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Collections.emptyMap;
+
+/**
+ * The javac types that the visitors of a single parse have already converted to Rewrite types, so that a type that
+ * is referred to from many places in a batch of source files is converted once rather than once per reference.
+ * <p>
+ * Conversions are keyed by the identity of javac's types. javac shares the {@link Type} of a class that has no type
+ * arguments among all references to it, but attributes every reference to a parameterized type to a new
+ * {@link Type}, so class types are only converted once per reference to a raw or non-generic class. Likewise, an
+ * invocation of a method that is a member of a parameterized type resolves to a {@link Type} of its own, so method
+ * types are only converted once per method of a class that isn't generic. Safe to share among visitors that map on
+ * different threads.
+ * <p>
+ * Class types of classes in the classpath's jars can also be seeded from a previous run, by jar and fully qualified
+ * name, which stand in for a conversion of any reference to the class without type arguments. The class types that
+ * this parse converts from the jars are collected, so that they can be stored for the next run.
+ */
+class JavaTypeMemo {
+    private final Map<String, Map<String, JavaType.Class>> storedClasspathTypes;
+    private final Map<String, Map<String, JavaType.Class>> convertedClasspathTypes = new ConcurrentHashMap<>();
+
+    private final Map<Type, JavaType> classTypes = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<Symbol.MethodSymbol, Map<String, Map<Type, JavaType.Method>>> methodTypes = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    JavaTypeMemo() {
+        this(emptyMap());
+    }
+
+    /**
+     * @param storedClasspathTypes Class types stored by a previous run, by the {@link #jarOf(Path) jar} they were
+     *                             converted from and then by fully qualified name.
+     */
+    JavaTypeMemo(Map<String, Map<String, JavaType.Class>> storedClasspathTypes) {
+        this.storedClasspathTypes = storedClasspathTypes;
+    }
+
+    /**
+     * @return The jar that a class file is an entry of, in the form of {@link #jarOf(Path)}, or null if it isn't
+     * an entry of a jar.
+     */
+    @Nullable
+    static String jarOf(JavaFileObject classfile) {
+        String uri = classfile.toUri().toString();
+        int entry = uri.indexOf('!');
+        return uri.startsWith("jar:") && entry > 0 ? uri.substring(0, entry) : null;
+    }
+
+    /**
+     * @return A jar of the classpath, as the prefix that javac gives the URIs of its entries.
+     */
+    static String jarOf(Path jar) {
+        return "jar:" + jar.toUri().normalize();
+    }
+
+    @Nullable
+    JavaType.Class storedClasspathType(String jar, String fullyQualifiedName) {
+        Map<String, JavaType.Class> stored = storedClasspathTypes.get(jar);
+        return stored == null ? null : stored.get(fullyQualifiedName);
+    }
+
+    void convertedClasspathType(String jar, JavaType.Class classType) {
+        convertedClasspathTypes.computeIfAbsent(jar, j -> new ConcurrentHashMap<>())
+                .put(classType.getFullyQualifiedName(), classType);
+    }
+
+    /**
+     * @return The class types this parse converted from completed class symbols of a jar, by fully qualified name.
+     */
+    Map<String, JavaType.Class> convertedClasspathTypes(String jar) {
+        return convertedClasspathTypes.getOrDefault(jar, emptyMap());
+    }
+
+    @Nullable
+    JavaType classType(Type type) {
+        return classTypes.get(type);
+    }
+
+    void classType(Type type, JavaType classType) {
+        classTypes.put(type, classType);
+    }
+
+    /**
+     * @param name The name that the method is invoked by, which is part of the method type and differs for the same
+     *             constructor invoked as this(..) and as super(..).
+     */
+    @Nullable
+    JavaType.Method methodType(Symbol.MethodSymbol symbol, String name, Type type) {
+        Map<String, Map<Type, JavaType.Method>> byName = methodTypes.get(symbol);
+        if (byName == null) {
+            return null;
+        }
+        Map<Type, JavaType.Method> byType = byName.get(name);
+        return byType == null ? null : byType.get(type);
+    }
+
+    void methodType(Symbol.MethodSymbol symbol, String name, Type type, JavaType.Method methodType) {
+        methodTypes.computeIfAbsent(symbol, s -> new ConcurrentHashMap<>())
+                .computeIfAbsent(name, n -> Collections.synchronizedMap(new IdentityHashMap<>()))
+                .put(type, methodType);
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import com.fasterxml.jackson.annotation.JsonProperty
+import org.openrewrite.java.tree.ClasspathTypeStore
+import org.openrewrite.java.tree.J
+import org.openrewrite.java.tree.JavaType
+import org.openrewrite.java.tree.TypeCache
+import org.openrewrite.java.tree.TypeUtils
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.function.Supplier
+
+class Java11ParserTest {
+
+    @Test
+    fun parallelMappingPreservesOrderOfSourceFiles(@TempDir tempDir: Path) {
+        val sources = (0 until 20).map { i ->
+            val source = tempDir.resolve("A$i.java")
+            Files.writeString(source, """
+                import java.util.List;
+                /**
+                 * Javadoc for A$i
+                 */
+                public class A$i {
+                    List<A${(i + 1) % 20}> next;
+                }
+            """.trimIndent())
+            source
+        }
+
+        val sequential = Java11Parser.builder().build().parse(sources, tempDir)
+        val parallel = Java11Parser.builder().parallelism(4).build().parse(sources, tempDir)
+
+        assertThat(parallel.map { it.sourcePath }).containsExactlyElementsOf(sources.map { tempDir.relativize(it).toString() })
+        parallel.forEachIndexed { i, cu ->
+            assertThat(cu.printTrimmed()).isEqualTo(sequential[i].printTrimmed())
+            val field = cu.classes[0].fields[0].typeExpr as J.ParameterizedType
+            assertThat(TypeUtils.asClass(field.type)?.fullyQualifiedName).isEqualTo("java.util.List")
+        }
+    }
+
+    @Test
+    fun seedClasspathTypesFromAPreviousRun(@TempDir tempDir: Path) {
+        val jar = Paths.get(JsonProperty::class.java.protectionDomain.codeSource.location.toURI())
+        val storeDir = tempDir.resolve("types")
+        val source = tempDir.resolve("A.java")
+        Files.writeString(source, """
+            import com.fasterxml.jackson.annotation.JsonProperty;
+            public class A {
+                JsonProperty property;
+            }
+        """.trimIndent())
+
+        fun parse(typeCache: TypeCache) = Java11Parser.builder()
+                .classpath(listOf(jar))
+                .classpathTypeStore(storeDir)
+                .typeCache(typeCache)
+                .build()
+                .parse(listOf(source), tempDir)[0]
+
+        val first = parse(TypeCache("first"))
+        val stored = TypeCache("check").run(Supplier {
+            ClasspathTypeStore(storeDir).let { it.load(jar, it.checksum(jar)) }
+        })
+        assertThat(stored).containsKey("com.fasterxml.jackson.annotation.JsonProperty")
+
+        val second = parse(TypeCache("second"))
+        val firstType = TypeUtils.asClass(first.classes[0].fields[0].typeExpr!!.type)!!
+        val secondType = TypeUtils.asClass(second.classes[0].fields[0].typeExpr!!.type)!!
+        assertThat(secondType.fullyQualifiedName).isEqualTo("com.fasterxml.jackson.annotation.JsonProperty")
+        assertThat(secondType.deepEquals(firstType)).isTrue()
+    }
+
+    @Test
+    fun rebuiltJarWithTheSameSizeAndModificationTimeIsNotSeededWithStaleTypes(@TempDir tempDir: Path) {
+        val store = ClasspathTypeStore(tempDir.resolve("types"))
+        val jar = tempDir.resolve("lib").resolve("a.jar")
+        Files.createDirectories(jar.parent)
+        Files.write(jar, byteArrayOf(1, 2, 3))
+        val lastModified = Files.getLastModifiedTime(jar)
+        val checksum = store.checksum(jar)
+
+        Files.write(jar, byteArrayOf(3, 2, 1))
+        Files.setLastModifiedTime(jar, lastModified)
+        assertThat(ClasspathTypeStore(store.directory).checksum(jar)).isNotEqualTo(checksum)
+    }
+
+    @Test
+    fun syntaxOnlyParseHasNoTypes(@TempDir tempDir: Path) {
+        val source = tempDir.resolve("A.java")
+        Files.writeString(source, """
+            import java.util.List;
+            public class A {
+                List<String> names = null;
+                int n = 1 + 2;
+            }
+        """.trimIndent())
+
+        val cu = Java11Parser.builder().typeAttribution(false).build().parse(listOf(source), tempDir)[0]
+
+        assertThat(cu.printTrimmed()).isEqualTo(Files.readString(source))
+        assertThat(cu.classes[0].type).isNull()
+        assertThat(cu.classes[0].fields[0].typeExpr!!.type).isNull()
+        assertThat((cu.classes[0].fields[1].vars[0].initializer as J.Binary).left.type).isEqualTo(JavaType.Primitive.Int)
+    }
+
+    @Test
+    fun reparseChangedSourceFilesAndTheirDependents(@TempDir tempDir: Path) {
+        val a = tempDir.resolve("A.java")
+        val b = tempDir.resolve("B.java")
+        val c = tempDir.resolve("C.java")
+        Files.writeString(a, "public class A { int n; }")
+        Files.writeString(b, "public class B { A a; }")
+        Files.writeString(c, "public class C { int n; }")
+
+        val parser = Java11Parser.builder().build()
+        val session = parser.parseSession(listOf(a, b, c), tempDir)
+
+        Files.writeString(a, "public class A { int n; String s; }")
+        val reparsed = parser.reparse(session, listOf(a))
+
+        assertThat(reparsed.compilationUnits.map { it.sourcePath }).containsExactly("A.java", "B.java", "C.java")
+        assertThat(reparsed.compilationUnits.map { it.id }).containsExactlyElementsOf(session.compilationUnits.map { it.id })
+
+        // C doesn't refer to A, so it isn't parsed again
+        assertThat(reparsed.getCompilationUnit(c)).isSameAs(session.getCompilationUnit(c))
+
+        val aType = reparsed.getCompilationUnit(b)!!.classes[0].fields[0].typeExpr!!.type
+        assertThat(TypeUtils.asClass(aType)!!.members.map { it.name }).containsExactly("n", "s")
+    }
+
+    @Test
+    fun parseInBatchesThatFollowDependencies(@TempDir tempDir: Path) {
+        val a = tempDir.resolve("A.java")
+        val b = tempDir.resolve("B.java")
+        val c = tempDir.resolve("C.java")
+        Files.writeString(a, "public class A { B b; }")
+        Files.writeString(b, "public class B { int n; }")
+        Files.writeString(c, "public class C { A a; }")
+
+        val cus = mutableListOf<J.CompilationUnit>()
+        Java11Parser.builder().build().parse(listOf(a, b, c), tempDir, 1) { cus.add(it) }
+
+        assertThat(cus.map { it.sourcePath }).containsExactly("B.java", "A.java", "C.java")
+
+        // A was attributed in an earlier batch than C
+        val aType = TypeUtils.asClass(cus[2].classes[0].fields[0].typeExpr!!.type)!!
+        assertThat(aType.fullyQualifiedName).isEqualTo("A")
+        assertThat(TypeUtils.asClass(aType.members[0].type)?.fullyQualifiedName).isEqualTo("B")
+    }
+
+    @Test
+    fun parseBatchesConcurrentlyWithAPool(@TempDir tempDir: Path) {
+        val batches = (0 until 8).map { batch ->
+            val dir = Files.createDirectories(tempDir.resolve("batch$batch"))
+            val source = dir.resolve("A.java")
+            // every batch has its own version of the same class
+            Files.writeString(source, """
+                public class A {
+                    int field$batch;
+                }
+            """.trimIndent())
+            listOf(source)
+        }
+
+        val pool = JavaParserPool(Java11Parser.builder(), 2)
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val cus = executor.invokeAll(batches.map { batch -> Callable { pool.parse(batch) } }).map { it.get()[0] }
+
+            cus.forEachIndexed { batch, cu ->
+                assertThat(cu.classes[0].fields[0].vars[0].simpleName).isEqualTo("field$batch")
+                assertThat(TypeUtils.asClass(cu.classes[0].type)!!.members.map { it.name }).containsExactly("field$batch")
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.tree;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.openrewrite.Formatting.EMPTY;
+
+/**
+ * Measures how {@link J.Ident#build(UUID, String, JavaType, org.openrewrite.Formatting)} scales as more threads
+ * build identifiers at once, as they do during parallel parsing and refactoring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class IdentInterningBenchmark {
+    private static final UUID ID = UUID.randomUUID();
+
+    @Param({"true", "false"})
+    boolean weakIdents;
+
+    private TypeCache typeCache;
+    private String[] names;
+    private JavaType[] types;
+
+    @Setup
+    public void setup() {
+        typeCache = new TypeCache("benchmark", 0, weakIdents);
+
+        names = new String[1000];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "name" + i;
+        }
+
+        types = typeCache.run(() -> new JavaType[]{
+                null,
+                JavaType.Primitive.Int,
+                JavaType.Class.build("java.lang.String"),
+                JavaType.Class.build("java.util.List")
+        });
+    }
+
+    /**
+     * Binds the benchmark's cache to each benchmark thread once, so that binding isn't part of what is measured.
+     */
+    @State(Scope.Thread)
+    public static class BoundTypeCache {
+        @Setup
+        public void bind(IdentInterningBenchmark benchmark) {
+            TypeCache.bind(benchmark.typeCache);
+        }
+
+        @TearDown
+        public void unbind() {
+            TypeCache.bind(null);
+        }
+    }
+
+    private J.Ident build() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String name = names[random.nextInt(names.length)];
+        JavaType type = types[random.nextInt(types.length)];
+        return J.Ident.build(ID, name, type, EMPTY);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public J.Ident threads01(BoundTypeCache bound) {
+        return build();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public J.Ident threads04(BoundTypeCache bound) {
+        return build();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public J.Ident threads08(BoundTypeCache bound) {
+        return build();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public J.Ident threads16(BoundTypeCache bound) {
+        return build();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public J.Ident threads32(BoundTypeCache bound) {
+        return build();
+    }
+}
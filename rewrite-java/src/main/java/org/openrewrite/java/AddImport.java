@@ -21,7 +21,6 @@ import lombok.EqualsAndHashCode;
 import org.openrewrite.Formatting;
 import org.openrewrite.Validated;
 import org.openrewrite.internal.lang.Nullable;
-import org.openrewrite.java.search.HasType;
 import org.openrewrite.java.tree.J;
 import org.openrewrite.java.tree.JavaType;
 import org.openrewrite.java.tree.TreeBuilder;
@@ -81,7 +80,7 @@ public class AddImport extends JavaRefactorVisitor {
 
     @Override
     public J visitCompilationUnit(J.CompilationUnit cu) {
-        boolean hasReferences = new HasType(type).visit(cu);
+        boolean hasReferences = cu.hasType(type);
 
         if (onlyIfReferenced && !hasReferences) {
             return cu;
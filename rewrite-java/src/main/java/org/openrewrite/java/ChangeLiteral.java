@@ -36,6 +36,14 @@ public class ChangeLiteral extends JavaRefactorVisitor {
         setCursoringOn();
     }
 
+    /**
+     * The type of a literal is known from its syntax alone.
+     */
+    @Override
+    public boolean isTypeAttributionRequired() {
+        return false;
+    }
+
     @Override
     public J visitLiteral(J.Literal literal) {
         if (getCursor().isScopeInPath(scope)) {
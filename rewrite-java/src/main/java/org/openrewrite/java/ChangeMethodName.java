@@ -20,9 +20,11 @@ import io.micrometer.core.instrument.Tags;
 import org.openrewrite.Validated;
 import org.openrewrite.java.tree.J;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.openrewrite.Validated.required;
 
-public class ChangeMethodName extends JavaRefactorVisitor {
+public class ChangeMethodName extends JavaRefactorVisitor implements MethodMatcherSet.Participant {
     private MethodMatcher methodMatcher;
     private String name;
 
@@ -40,6 +42,11 @@ public class ChangeMethodName extends JavaRefactorVisitor {
                 .and(required("name", name));
     }
 
+    @Override
+    public Iterable<MethodMatcher> getMethodMatchers() {
+        return methodMatcher == null ? emptyList() : singletonList(methodMatcher);
+    }
+
     @Override
     public J visitMethodInvocation(J.MethodInvocation method) {
         if (methodMatcher.matches(method)) {
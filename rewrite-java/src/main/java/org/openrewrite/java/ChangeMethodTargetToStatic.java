@@ -25,11 +25,13 @@ import org.openrewrite.java.tree.JavaType;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.openrewrite.Formatting.EMPTY;
 import static org.openrewrite.Tree.randomId;
 import static org.openrewrite.Validated.required;
 
-public class ChangeMethodTargetToStatic extends JavaRefactorVisitor {
+public class ChangeMethodTargetToStatic extends JavaRefactorVisitor implements MethodMatcherSet.Participant {
     private MethodMatcher methodMatcher;
     private String targetType;
 
@@ -47,6 +49,11 @@ public class ChangeMethodTargetToStatic extends JavaRefactorVisitor {
                 .and(required("target.type", targetType));
     }
 
+    @Override
+    public Iterable<MethodMatcher> getMethodMatchers() {
+        return methodMatcher == null ? emptyList() : singletonList(methodMatcher);
+    }
+
     @Override
     public J visitMethodInvocation(J.MethodInvocation method) {
         if(methodMatcher.matches(method)) {
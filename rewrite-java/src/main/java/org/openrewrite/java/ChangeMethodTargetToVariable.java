@@ -25,10 +25,12 @@ import org.openrewrite.java.tree.*;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.openrewrite.Tree.randomId;
 import static org.openrewrite.Validated.required;
 
-public class ChangeMethodTargetToVariable extends JavaRefactorVisitor {
+public class ChangeMethodTargetToVariable extends JavaRefactorVisitor implements MethodMatcherSet.Participant {
     private MethodMatcher methodMatcher;
     private String variable;
     private JavaType.Class variableType;
@@ -52,6 +54,11 @@ public class ChangeMethodTargetToVariable extends JavaRefactorVisitor {
                 .and(required("variable.type", variableType.getFullyQualifiedName()));
     }
 
+    @Override
+    public Iterable<MethodMatcher> getMethodMatchers() {
+        return methodMatcher == null ? emptyList() : singletonList(methodMatcher);
+    }
+
     @Override
     public J visitMethodInvocation(J.MethodInvocation method) {
         if(methodMatcher.matches(method)) {
@@ -17,6 +17,7 @@ package org.openrewrite.java;
 
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
+import org.openrewrite.InvertedIndex;
 import org.openrewrite.Tree;
 import org.openrewrite.Validated;
 import org.openrewrite.internal.lang.Nullable;
@@ -24,6 +25,7 @@ import org.openrewrite.java.tree.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import static org.openrewrite.Tree.randomId;
 import static org.openrewrite.Validated.required;
@@ -35,7 +37,7 @@ import static org.openrewrite.Validated.required;
  * it were prefixed like `this.a`, or `MyClass.this.a`, or indirectly via a separate method call like `getA()` where `getA()`
  * is defined on the super class.
  */
-public class ChangeType extends JavaRefactorVisitor {
+public class ChangeType extends JavaRefactorVisitor implements InvertedIndex.Prefilter {
     private String type;
     private JavaType.Class targetType;
 
@@ -57,6 +59,13 @@ public class ChangeType extends JavaRefactorVisitor {
                 .and(required("target.type", targetType.getFullyQualifiedName()));
     }
 
+    @Override
+    @Nullable
+    public Set<String> candidateSourcePaths(InvertedIndex index) {
+        // not configured yet, and validate() will say so, but until then any source file is a candidate
+        return type == null ? null : index.sourcePaths(InvertedIndex.Term.type(type));
+    }
+
     @Override
     public Iterable<Tag> getTags() {
         return Tags.of("type", type, "target.type", targetType.getFullyQualifiedName());
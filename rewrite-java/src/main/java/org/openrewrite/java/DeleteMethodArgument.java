@@ -23,11 +23,12 @@ import org.openrewrite.java.tree.J;
 import java.util.ArrayList;
 import java.util.List;
 
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.openrewrite.Tree.randomId;
 import static org.openrewrite.Validated.required;
 
-public class DeleteMethodArgument extends JavaRefactorVisitor {
+public class DeleteMethodArgument extends JavaRefactorVisitor implements MethodMatcherSet.Participant {
     private MethodMatcher methodMatcher;
     private Integer index;
 
@@ -50,6 +51,11 @@ public class DeleteMethodArgument extends JavaRefactorVisitor {
                 .and(required("index", index));
     }
 
+    @Override
+    public Iterable<MethodMatcher> getMethodMatchers() {
+        return methodMatcher == null ? emptyList() : singletonList(methodMatcher);
+    }
+
     @Override
     public J visitMethodInvocation(J.MethodInvocation method) {
         if(methodMatcher.matches(method)) {
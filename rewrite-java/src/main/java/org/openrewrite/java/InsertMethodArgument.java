@@ -25,11 +25,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.openrewrite.Formatting.format;
 import static org.openrewrite.Tree.randomId;
 import static org.openrewrite.Validated.required;
 
-public class InsertMethodArgument extends JavaRefactorVisitor {
+public class InsertMethodArgument extends JavaRefactorVisitor implements MethodMatcherSet.Participant {
     private MethodMatcher methodMatcher;
     private Integer index;
     private String source;
@@ -53,6 +55,11 @@ public class InsertMethodArgument extends JavaRefactorVisitor {
                 .and(required("source", source));
     }
 
+    @Override
+    public Iterable<MethodMatcher> getMethodMatchers() {
+        return methodMatcher == null ? emptyList() : singletonList(methodMatcher);
+    }
+
     @Override
     public boolean isIdempotent() {
         return false;
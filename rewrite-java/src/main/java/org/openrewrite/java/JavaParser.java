@@ -17,24 +17,25 @@ package org.openrewrite.java;
 
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Metrics;
+import org.openrewrite.RefactorPlan;
+import org.openrewrite.SourceVisitor;
 import org.openrewrite.internal.lang.Nullable;
 import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.TypeCache;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.List;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import static java.util.Collections.singletonList;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.stream.Collectors.toList;
 
 public interface JavaParser {
@@ -99,44 +100,67 @@ public interface JavaParser {
     }
 
     default J.CompilationUnit parse(String source, String... whichDependOn) {
-        try {
-            Path temp = Files.createTempDirectory("sources");
-
-            Pattern classPattern = Pattern.compile("(class|interface|enum)\\s*(<[^>]*>)?\\s+(\\w+)");
-
-            Function<String, String> simpleName = sourceStr -> {
-                Matcher classMatcher = classPattern.matcher(sourceStr);
-                return classMatcher.find() ? classMatcher.group(3) : null;
-            };
-
-            Function<String, Path> sourceFile = sourceText -> {
-                Path file = temp.resolve(simpleName.apply(sourceText) + ".java");
-                try {
-                    Files.write(file, sourceText.getBytes(Charset.defaultCharset()));
-                } catch (IOException e) {
-                    throw new UncheckedIOException(e);
-                }
-                return file;
-            };
-
-            try {
-                List<J.CompilationUnit> cus = parse(Stream.concat(
-                        Arrays.stream(whichDependOn).map(sourceFile),
-                        Stream.of(sourceFile.apply(source))
-                ).collect(toList()));
-
-                return cus.get(cus.size() - 1);
-            } finally {
-                // delete temp recursively
-                //noinspection ResultOfMethodCallIgnored
-                Files.walk(temp)
-                        .sorted(Comparator.reverseOrder())
-                        .map(Path::toFile)
-                        .forEach(File::delete);
-            }
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        Pattern classPattern = Pattern.compile("(class|interface|enum)\\s*(<[^>]*>)?\\s+(\\w+)");
+
+        // javac expects a public class to be in a file of the same name
+        Function<String, Input> input = sourceText -> {
+            Matcher classMatcher = classPattern.matcher(sourceText);
+            return new Input(Paths.get((classMatcher.find() ? classMatcher.group(3) : null) + ".java"), sourceText);
+        };
+
+        List<J.CompilationUnit> cus = parseInputs(Stream.concat(
+                Arrays.stream(whichDependOn).map(input),
+                Stream.of(input.apply(source))
+        ).collect(toList()), null);
+
+        return cus.get(cus.size() - 1);
+    }
+
+    /**
+     * Parses source that is already in memory, without writing it to or reading it from disk.
+     *
+     * @param inputs     The source files to parse.
+     * @param relativeTo The path that the paths of the inputs are relativized against, if any.
+     * @return The compilation units, in the order of the inputs.
+     */
+    List<J.CompilationUnit> parseInputs(List<Input> inputs, @Nullable Path relativeTo);
+
+    /**
+     * Parses source files in batches, handing over the compilation units of each batch as soon as it has been
+     * parsed, rather than all of them at the end. The compiler's own trees of a batch are released before the next
+     * batch is parsed, but the symbols they declared are kept, so that later batches can refer to them.
+     *
+     * @param batchSize The number of source files to parse at a time. Source files that refer to each other are
+     *                  always in the same batch, even if that makes a batch bigger than this.
+     * @param onParsed  Receives every compilation unit, batch by batch, so not necessarily in the order of the
+     *                  source files.
+     */
+    void parse(List<Path> sourceFiles, @Nullable Path relativeTo, int batchSize, Consumer<J.CompilationUnit> onParsed);
+
+    /**
+     * Parses source files like {@link #parse(List, Path)}, remembering which compilation unit each of them was
+     * parsed to, so that the parse can later be brought up to date with {@link #reparse(Session, Collection)}.
+     */
+    Session parseSession(List<Path> sourceFiles, @Nullable Path relativeTo);
+
+    /**
+     * Brings a previous parse up to date with source files that have changed since, without attributing every
+     * source file again. Source files that changed are parsed again, as are those that refer to a type that a changed
+     * source file declared. The compilation units of all other source files are kept as they are.
+     *
+     * @param session A previous parse by this parser.
+     * @param changed Source files that have changed, been added, or been deleted since the previous parse.
+     * @return The updated parse, in which the compilation units of source files that were in the previous parse
+     * keep their ids.
+     */
+    Session reparse(Session session, Collection<Path> changed);
+
+    /**
+     * @return The cache that owns the types of the compilation units this parser builds. Refactor them with
+     * {@link J.CompilationUnit#refactor(TypeCache)} so that the types their visitors build are interned there too.
+     */
+    default TypeCache getTypeCache() {
+        return TypeCache.global();
     }
 
     /**
@@ -154,6 +178,12 @@ public interface JavaParser {
         protected boolean relaxedClassTypeMatching = false;
         protected MeterRegistry meterRegistry = Metrics.globalRegistry;
         protected boolean logCompilationWarningsAndErrors = true;
+        protected TypeCache typeCache = TypeCache.global();
+        protected int parallelism = 1;
+        protected boolean typeAttribution = true;
+
+        @Nullable
+        protected Path classpathTypeStore;
 
         public B logCompilationWarningsAndErrors(boolean logCompilationWarningsAndErrors) {
             this.logCompilationWarningsAndErrors = logCompilationWarningsAndErrors;
@@ -180,6 +210,116 @@ public interface JavaParser {
             return (B) this;
         }
 
+        /**
+         * @param typeCache The cache that will own the types, identifiers, and formatting built by this parser.
+         *                  Defaults to the process-wide {@link TypeCache#global()} cache.
+         */
+        public B typeCache(TypeCache typeCache) {
+            this.typeCache = typeCache;
+            return (B) this;
+        }
+
+        /**
+         * @param parallelism The number of threads that map the compiler's ASTs to Rewrite ASTs once they have
+         *                    been type attributed. Parsing and type attribution themselves are always single
+         *                    threaded. Defaults to 1, i.e. mapping on the calling thread.
+         */
+        public B parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("Parallelism must be at least 1, but was " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return (B) this;
+        }
+
+        /**
+         * @param classpathTypeStore A directory in which to keep the class types of the classpath's jars from one
+         *                           run to the next, so that each jar's types are converted once rather than on
+         *                           every run. See {@link org.openrewrite.java.tree.ClasspathTypeStore}.
+         */
+        public B classpathTypeStore(Path classpathTypeStore) {
+            this.classpathTypeStore = classpathTypeStore;
+            return (B) this;
+        }
+
+        /**
+         * @param typeAttribution When false, source files are only parsed, and not attributed, so every type in
+         *                        the compilation units is null. Much cheaper, and enough for visitors that don't
+         *                        read types. Defaults to true.
+         */
+        public B typeAttribution(boolean typeAttribution) {
+            this.typeAttribution = typeAttribution;
+            return (B) this;
+        }
+
+        /**
+         * Attributes types only if a visitor of the plan that would run on the compilation units needs them.
+         * See {@link SourceVisitor#isTypeAttributionRequired()}.
+         */
+        public B typeAttribution(RefactorPlan plan, Iterable<String> profiles) {
+            return typeAttribution(plan.isTypeAttributionRequired(J.CompilationUnit.class, profiles));
+        }
+
         public abstract P build();
     }
+
+    /**
+     * The source files of a parse, and the compilation unit that each of them was parsed to.
+     */
+    class Session {
+        @Nullable
+        private final Path relativeTo;
+
+        private final Map<Path, J.CompilationUnit> compilationUnits;
+
+        /**
+         * @param relativeTo       The path that the source paths of the compilation units are relative to, if any.
+         * @param compilationUnits Compilation units by the absolute path of their source file, in the order they
+         *                         were parsed in.
+         */
+        public Session(@Nullable Path relativeTo, Map<Path, J.CompilationUnit> compilationUnits) {
+            this.relativeTo = relativeTo;
+            this.compilationUnits = unmodifiableMap(new LinkedHashMap<>(compilationUnits));
+        }
+
+        @Nullable
+        public Path getRelativeTo() {
+            return relativeTo;
+        }
+
+        public List<Path> getSourceFiles() {
+            return new ArrayList<>(compilationUnits.keySet());
+        }
+
+        public List<J.CompilationUnit> getCompilationUnits() {
+            return new ArrayList<>(compilationUnits.values());
+        }
+
+        @Nullable
+        public J.CompilationUnit getCompilationUnit(Path sourceFile) {
+            return compilationUnits.get(sourceFile.toAbsolutePath());
+        }
+    }
+
+    /**
+     * A source file to parse that is already in memory. The path is where the source file would be, and is the
+     * source path of its compilation unit, but no file has to exist there.
+     */
+    class Input {
+        private final Path path;
+        private final CharSequence source;
+
+        public Input(Path path, CharSequence source) {
+            this.path = path;
+            this.source = source;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public CharSequence getSource() {
+            return source;
+        }
+    }
 }
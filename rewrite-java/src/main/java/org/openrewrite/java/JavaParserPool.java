@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+
+/**
+ * A fixed number of parsers built by the same builder, which any number of threads can share. A parser isn't safe
+ * to use from more than one thread at once, and building one is expensive (it sets up a whole compiler), so rather
+ * than each thread building its own parser, threads borrow one of the pool's parsers for a batch of source files and
+ * hand it back when they are done with it. The pool builds its parsers up front, but a parser only opens the jars of
+ * the classpath once it parses, so the first batch of each parser still pays for that.
+ * <p>
+ * A parser is {@link JavaParser#reset() reset} every time it is handed back, so that batches never see each other's
+ * classes. Parsers built by the same builder share what they learn about the files of the classpath.
+ */
+public class JavaParserPool {
+    private final JavaParser.Builder<?, ?> builder;
+    private final BlockingQueue<JavaParser> idle;
+    private final int size;
+
+    /**
+     * @param builder The builder of every parser in the pool.
+     * @param size    The number of parsers, which is the number of threads that can parse at once.
+     */
+    public JavaParserPool(JavaParser.Builder<?, ?> builder, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("A parser pool must have at least one parser, but was asked for " + size);
+        }
+
+        this.builder = builder;
+        this.size = size;
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) {
+            idle.add(builder.build());
+        }
+    }
+
+    /**
+     * Parses a batch of source files with whichever parser is idle first, waiting for one if they are all in use.
+     */
+    public List<J.CompilationUnit> parse(List<Path> sourceFiles, @Nullable Path relativeTo) {
+        return run(parser -> parser.parse(sourceFiles, relativeTo));
+    }
+
+    public List<J.CompilationUnit> parse(List<Path> sourceFiles) {
+        return parse(sourceFiles, null);
+    }
+
+    /**
+     * @param work Work with a parser that only the work uses until it completes, and must not hold on to.
+     * @param <T>  The result of the work.
+     * @return The result of the work.
+     */
+    public <T> T run(Function<JavaParser, T> work) {
+        JavaParser parser;
+        try {
+            parser = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a parser", e);
+        }
+
+        try {
+            return work.apply(parser);
+        } finally {
+            idle.add(reset(parser));
+        }
+    }
+
+    private JavaParser reset(JavaParser parser) {
+        try {
+            return parser.reset();
+        } catch (RuntimeException e) {
+            // a parser that can't be reset is in no state to parse another batch
+            return builder.build();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+}
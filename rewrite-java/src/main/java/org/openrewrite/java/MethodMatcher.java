@@ -15,12 +15,14 @@
  */
 package org.openrewrite.java;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.NonFinal;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.tree.TerminalNode;
+import org.openrewrite.InvertedIndex;
 import org.openrewrite.internal.lang.Nullable;
 import org.openrewrite.java.internal.grammar.AspectJLexer;
 import org.openrewrite.java.internal.grammar.RefactorMethodSignatureParser;
@@ -31,17 +33,72 @@ import org.openrewrite.java.tree.TypeUtils;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
+import static java.util.Collections.emptyList;
 import static java.util.stream.Collectors.joining;
 
+/**
+ * Matches method invocations against an AspectJ-style method signature, e.g. <code>java.util.List add(..)</code>.
+ * <p>
+ * The signature is compiled into a name pattern for the target type, a name pattern for the method, and one pattern
+ * per formal parameter. A name without wildcards is compared as a plain string, and only names with wildcards are
+ * matched with a regular expression. The outcome is remembered per method type, and since method types are interned,
+ * every invocation of the same method after the first is a single lookup.
+ */
 @Getter
 public class MethodMatcher {
+    /**
+     * The most types each of the caches below remembers the outcome for, so that a long-lived matcher doesn't keep
+     * every type it has ever seen alive.
+     */
+    static final int MAX_CACHED_TYPES = 10_000;
+
     private Pattern targetTypePattern;
     private Pattern methodNamePattern;
     private Pattern argumentPattern;
 
+    @Getter(AccessLevel.NONE)
+    private NamePattern targetType;
+
+    @Getter(AccessLevel.NONE)
+    private NamePattern methodName;
+
+    /**
+     * The formal parameters before the .. wildcard, or all of them when there is none.
+     */
+    @Getter(AccessLevel.NONE)
+    private final List<NamePattern> leadingArguments = new ArrayList<>();
+
+    /**
+     * The formal parameters after the .. wildcard, or null when there is none.
+     */
+    @Getter(AccessLevel.NONE)
+    @Nullable
+    private List<NamePattern> trailingArguments;
+
+    /**
+     * Type hierarchies are walked once per distinct type rather than once per invocation.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<JavaType.FullyQualified, Boolean> targetTypeMatches = new ConcurrentHashMap<>();
+
+    /**
+     * Method types are interned and compare by identity.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Map<JavaType.Method, Boolean> methodTypeMatches = new ConcurrentHashMap<>();
+
+    /**
+     * When this matcher belongs to a set, the set answers for all of its matchers at once.
+     */
+    @Getter(AccessLevel.NONE)
+    @Nullable
+    private volatile MethodMatcherSet methodMatcherSet;
+
     public MethodMatcher(String signature) {
         RefactorMethodSignatureParser parser = new RefactorMethodSignatureParser(new CommonTokenStream(new AspectJLexer(
                 CharStreams.fromString(signature))));
@@ -49,42 +106,155 @@ public class MethodMatcher {
         new RefactorMethodSignatureParserBaseVisitor<Void>() {
             @Override
             public Void visitMethodPattern(RefactorMethodSignatureParser.MethodPatternContext ctx) {
-                targetTypePattern = Pattern.compile(new TypeVisitor().visitTargetTypePattern(ctx.targetTypePattern()));
-                methodNamePattern = Pattern.compile(ctx.simpleNamePattern().children.stream()
+                targetType = NamePattern.compile(new TypeVisitor().visitTargetTypePattern(ctx.targetTypePattern()));
+                targetTypePattern = targetType.toPattern();
+
+                methodName = NamePattern.compile(ctx.simpleNamePattern().children.stream()
                         .map(c -> AspectjUtils.aspectjNameToPattern(c.toString()))
                         .collect(joining("")));
-                argumentPattern = Pattern.compile(new FormalParameterVisitor().visitFormalParametersPattern(
+                methodNamePattern = methodName.toPattern();
+
+                FormalParameterVisitor formalParameterVisitor = new FormalParameterVisitor();
+                argumentPattern = Pattern.compile(formalParameterVisitor.visitFormalParametersPattern(
                         ctx.formalParametersPattern()));
+
+                List<String> formalTypes = formalParameterVisitor.getFormalTypeRegexes();
+                int dotDot = formalParameterVisitor.getDotDotIndex();
+                for (int i = 0; i < formalTypes.size(); i++) {
+                    NamePattern formalType = NamePattern.compile(formalTypes.get(i));
+                    if (dotDot == -1 || i < dotDot) {
+                        leadingArguments.add(formalType);
+                    } else {
+                        if (trailingArguments == null) {
+                            trailingArguments = new ArrayList<>();
+                        }
+                        trailingArguments.add(formalType);
+                    }
+                }
+                if (dotDot != -1 && trailingArguments == null) {
+                    trailingArguments = emptyList();
+                }
                 return null;
             }
         }.visit(parser.methodPattern());
     }
 
     public boolean matches(J.MethodInvocation method) {
-        if (method.getType() == null || method.getType().getDeclaringType() == null) {
+        return matches(method.getType());
+    }
+
+    public boolean matches(@Nullable JavaType.Method type) {
+        MethodMatcherSet set = methodMatcherSet;
+        if (set != null) {
+            return set.matching(type).contains(this);
+        }
+        return matchesType(type);
+    }
+
+    boolean matchesType(@Nullable JavaType.Method type) {
+        if (type == null || type.getDeclaringType() == null) {
             return false;
         }
 
-        if (method.getType().getResolvedSignature() == null) {
+        if (type.getResolvedSignature() == null) {
             // no way to verify the parameter list
             return false;
         }
 
-        String resolvedSignaturePattern = method.getType().getResolvedSignature().getParamTypes().stream()
-                .map(this::typePattern)
-                .filter(Objects::nonNull)
-                .collect(joining(","));
-
-        return matchesTargetType(method.getType().getDeclaringType()) &&
-                methodNamePattern.matcher(method.getSimpleName()).matches() &&
-                argumentPattern.matcher(resolvedSignaturePattern).matches();
+        Boolean matches = methodTypeMatches.get(type);
+        if (matches == null) {
+            matches = methodName.matches(type.getName()) &&
+                    matchesArguments(type.getResolvedSignature().getParamTypes()) &&
+                    matchesTargetType(type.getDeclaringType());
+            cache(methodTypeMatches, type, matches);
+        }
+        return matches;
     }
 
     boolean matchesTargetType(@Nullable JavaType.FullyQualified type) {
-        JavaType.Class asClass = TypeUtils.asClass(type);
-        return type != null && (targetTypePattern.matcher(type.getFullyQualifiedName()).matches() ||
-                type != JavaType.Class.OBJECT &&
-                        (asClass == null || matchesTargetType(asClass.getSupertype() == null ? JavaType.Class.OBJECT : asClass.getSupertype())));
+        if (type == null) {
+            return false;
+        }
+
+        Boolean matches = targetTypeMatches.get(type);
+        if (matches == null) {
+            JavaType.Class asClass = TypeUtils.asClass(type);
+            matches = targetType.matches(type.getFullyQualifiedName()) ||
+                    type != JavaType.Class.OBJECT &&
+                            (asClass == null || matchesTargetType(asClass.getSupertype() == null ? JavaType.Class.OBJECT : asClass.getSupertype()));
+            cache(targetTypeMatches, type, matches);
+        }
+        return matches;
+    }
+
+    static <K, V> void cache(Map<K, V> cache, K key, V value) {
+        if (cache.size() >= MAX_CACHED_TYPES) {
+            // starting over is cheaper than tracking recency, and the types being matched now are cached again soon
+            cache.clear();
+        }
+        cache.put(key, value);
+    }
+
+    private boolean matchesArguments(List<JavaType> paramTypes) {
+        List<String> params = new ArrayList<>(paramTypes.size());
+        for (JavaType paramType : paramTypes) {
+            String param = typePattern(paramType);
+            if (param != null) {
+                params.add(param);
+            }
+        }
+
+        if (trailingArguments == null ?
+                params.size() != leadingArguments.size() :
+                params.size() < leadingArguments.size() + trailingArguments.size()) {
+            return false;
+        }
+
+        for (int i = 0; i < leadingArguments.size(); i++) {
+            if (!leadingArguments.get(i).matches(params.get(i))) {
+                return false;
+            }
+        }
+
+        if (trailingArguments != null) {
+            int offset = params.size() - trailingArguments.size();
+            for (int i = 0; i < trailingArguments.size(); i++) {
+                if (!trailingArguments.get(i).matches(params.get(offset + i))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The paths of the indexed source files that invoke a method with the name this matcher matches,
+     * or null if the name contains a wildcard.
+     */
+    @Nullable
+    public Set<String> candidateSourcePaths(InvertedIndex index) {
+        return methodName.literal == null ? null : index.sourcePaths(InvertedIndex.Term.methodName(methodName.literal));
+    }
+
+    void setMethodMatcherSet(MethodMatcherSet methodMatcherSet) {
+        this.methodMatcherSet = methodMatcherSet;
+    }
+
+    /**
+     * @return The method name when the signature names exactly one method, or null when it contains a wildcard.
+     */
+    @Nullable
+    String getMethodNameLiteral() {
+        return methodName.literal;
+    }
+
+    /**
+     * @return The target type when the signature names exactly one type, or null when it contains a wildcard.
+     */
+    @Nullable
+    String getTargetTypeLiteral() {
+        return targetType.literal;
     }
 
     @Nullable
@@ -98,6 +268,52 @@ public class MethodMatcher {
         }
         return null;
     }
+
+    /**
+     * A name that is either compared as a plain string or, when it contains a wildcard, matched with a regular expression.
+     */
+    static class NamePattern {
+        @Nullable
+        final String literal;
+
+        private final String regex;
+
+        @Nullable
+        private final Pattern pattern;
+
+        private NamePattern(@Nullable String literal, String regex, @Nullable Pattern pattern) {
+            this.literal = literal;
+            this.regex = regex;
+            this.pattern = pattern;
+        }
+
+        static NamePattern compile(String regex) {
+            String unescaped = regex.replace("\\.", ".")
+                    .replace("\\[", "[")
+                    .replace("\\]", "]");
+
+            String withoutEscapes = regex.replace("\\.", "")
+                    .replace("\\[", "")
+                    .replace("\\]", "");
+
+            for (char c : withoutEscapes.toCharArray()) {
+                // an unescaped '.' between the parts of a qualified name is meant literally
+                if (c != '.' && "\\*+?()[]{}|^$".indexOf(c) >= 0) {
+                    return new NamePattern(null, regex, Pattern.compile(regex));
+                }
+            }
+
+            return new NamePattern(unescaped, regex, null);
+        }
+
+        boolean matches(String name) {
+            return pattern == null ? name.equals(literal) : pattern.matcher(name).matches();
+        }
+
+        Pattern toPattern() {
+            return pattern == null ? Pattern.compile(regex) : pattern;
+        }
+    }
 }
 
 class TypeVisitor extends RefactorMethodSignatureParserBaseVisitor<String> {
@@ -186,6 +402,26 @@ class FormalParameterVisitor extends RefactorMethodSignatureParserBaseVisitor<St
         return String.join("", argumentPatterns).replace("...", "\\[\\]");
     }
 
+    /**
+     * @return The regular expression of each formal parameter other than the .. wildcard, in order.
+     */
+    List<String> getFormalTypeRegexes() {
+        List<String> regexes = new ArrayList<>(arguments.size());
+        for (Argument argument : arguments) {
+            if (argument != Argument.DOT_DOT) {
+                regexes.add(argument.getRegex().replace("...", "\\[\\]"));
+            }
+        }
+        return regexes;
+    }
+
+    /**
+     * @return The number of formal parameters preceding the .. wildcard, or -1 if there is none.
+     */
+    int getDotDotIndex() {
+        return arguments.indexOf(Argument.DOT_DOT);
+    }
+
     private static abstract class Argument {
         abstract String getRegex();
 
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java;
+
+import org.openrewrite.InvertedIndex;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Collections.emptySet;
+
+/**
+ * Answers which of many {@link MethodMatcher} match a method invocation.
+ * <p>
+ * Matchers are indexed by method name, so an invocation is only tested against the matchers that could name it
+ * (and those whose method name contains a wildcard). The answer is remembered per method type, so it is computed once
+ * per distinct method for the whole set rather than once per matcher.
+ * <p>
+ * Once a matcher has been added to a set, its own {@link MethodMatcher#matches(J.MethodInvocation)} is answered by the
+ * set. Visitors from the same plan can share one set with {@link #share(Iterable)}, e.g.
+ * <code>MethodMatcherSet.share(plan.visitors(J.CompilationUnit.class, profiles))</code>, and then each of their
+ * traversals only pays for a lookup.
+ */
+public class MethodMatcherSet {
+    private final Map<String, List<MethodMatcher>> byMethodName = new HashMap<>();
+    private final List<MethodMatcher> anyMethodName = new ArrayList<>();
+    private final Map<JavaType.Method, Set<MethodMatcher>> matchesByMethodType = new ConcurrentHashMap<>();
+
+    private int size = 0;
+
+    /**
+     * @param visitors Visitors, some of which may be {@link Participant}s.
+     * @return A set of the matchers of all participating visitors.
+     */
+    public static MethodMatcherSet share(Iterable<?> visitors) {
+        MethodMatcherSet set = new MethodMatcherSet();
+        for (Object visitor : visitors) {
+            if (visitor instanceof Participant) {
+                for (MethodMatcher methodMatcher : ((Participant) visitor).getMethodMatchers()) {
+                    set.add(methodMatcher);
+                }
+            }
+        }
+        return set;
+    }
+
+    public synchronized MethodMatcherSet add(MethodMatcher methodMatcher) {
+        String methodName = methodMatcher.getMethodNameLiteral();
+        if (methodName == null) {
+            anyMethodName.add(methodMatcher);
+        } else {
+            byMethodName.computeIfAbsent(methodName, n -> new ArrayList<>()).add(methodMatcher);
+        }
+        size++;
+
+        methodMatcher.setMethodMatcherSet(this);
+
+        // answers computed so far don't know about the new matcher
+        matchesByMethodType.clear();
+        return this;
+    }
+
+    public Set<MethodMatcher> matching(J.MethodInvocation method) {
+        return matching(method.getType());
+    }
+
+    /**
+     * @param type A method type.
+     * @return The matchers in this set that match the method type.
+     */
+    public Set<MethodMatcher> matching(@Nullable JavaType.Method type) {
+        if (type == null) {
+            return emptySet();
+        }
+
+        Set<MethodMatcher> matching = matchesByMethodType.get(type);
+        return matching == null ? computeMatching(type) : matching;
+    }
+
+    /**
+     * Remembers the answer while holding the same lock as {@link #add(MethodMatcher)}, so that an answer computed
+     * before a matcher was added can't be remembered after the answers were cleared for it.
+     */
+    private synchronized Set<MethodMatcher> computeMatching(JavaType.Method type) {
+        Set<MethodMatcher> matching = null;
+
+        List<MethodMatcher> candidates = byMethodName.get(type.getName());
+        if (candidates != null) {
+            matching = collectMatching(type, candidates, null);
+        }
+        matching = collectMatching(type, anyMethodName, matching);
+        if (matching == null) {
+            matching = emptySet();
+        }
+
+        MethodMatcher.cache(matchesByMethodType, type, matching);
+        return matching;
+    }
+
+    @Nullable
+    private static Set<MethodMatcher> collectMatching(JavaType.Method type, List<MethodMatcher> candidates,
+                                                      @Nullable Set<MethodMatcher> matching) {
+        for (MethodMatcher candidate : candidates) {
+            if (candidate.matchesType(type)) {
+                if (matching == null) {
+                    matching = Collections.newSetFromMap(new IdentityHashMap<>());
+                }
+                matching.add(candidate);
+            }
+        }
+        return matching;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * A visitor that matches method invocations with one or more {@link MethodMatcher}, which it is willing to
+     * share with other visitors through a {@link MethodMatcherSet}. Such a visitor can only change source files that
+     * invoke a method its matchers could match.
+     */
+    public interface Participant extends InvertedIndex.Prefilter {
+        Iterable<MethodMatcher> getMethodMatchers();
+
+        @Nullable
+        @Override
+        default Set<String> candidateSourcePaths(InvertedIndex index) {
+            Set<String> candidates = new HashSet<>();
+            for (MethodMatcher methodMatcher : getMethodMatchers()) {
+                Set<String> matcherCandidates = methodMatcher.candidateSourcePaths(index);
+                if (matcherCandidates == null) {
+                    return null;
+                }
+                candidates.addAll(matcherCandidates);
+            }
+            return candidates;
+        }
+    }
+}
@@ -96,6 +96,15 @@ public class OrderImports extends JavaRefactorVisitor {
         this.removeUnused = removeUnused;
     }
 
+    /**
+     * Ordering is by the text of the imports alone, but telling which imports are unused needs the types that the
+     * compilation unit refers to.
+     */
+    @Override
+    public boolean isTypeAttributionRequired() {
+        return removeUnused;
+    }
+
     /**
      * @return The default import ordering of IntelliJ IDEA.
      */
@@ -15,15 +15,13 @@
  */
 package org.openrewrite.java;
 
-import org.openrewrite.Tree;
-import org.openrewrite.java.tree.*;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
 
-import java.util.*;
-import java.util.stream.Stream;
-
-import static java.util.Collections.emptyMap;
-import static java.util.Collections.singleton;
-import static java.util.stream.Collectors.toSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Assumes imports are ordered. Only meant to be used by {@link OrderImports}.
@@ -39,8 +37,8 @@ class RemoveUnusedImports extends JavaRefactorVisitor {
 
     @Override
     public J visitCompilationUnit(J.CompilationUnit cu) {
-        Map<String, Set<JavaType.Class>> typesByPackage = new TypesByPackage().visit(cu);
-        Map<String, Set<String>> methodsByTypeName = new MethodsByType().visit(cu);
+        Map<String, Set<JavaType.Class>> typesByPackage = cu.getReferenceIndex().getReferencedTypesByPackage();
+        Map<String, Set<String>> methodsByTypeName = cu.getReferenceIndex().getUnqualifiedStaticMethodsByType();
 
         boolean changed = false;
         final List<J.Import> importsWithoutUnused = new ArrayList<>();
@@ -89,82 +87,4 @@ class RemoveUnusedImports extends JavaRefactorVisitor {
 
         return changed ? cu.withImports(importsWithoutUnused) : cu;
     }
-
-    static class TypesByPackage extends JavaSourceVisitor<Map<String, Set<JavaType.Class>>> {
-        TypesByPackage() {
-            setCursoringOn();
-        }
-
-        @Override
-        public Map<String, Set<JavaType.Class>> reduce(Map<String, Set<JavaType.Class>> r1,
-                                                       Map<String, Set<JavaType.Class>> r2) {
-            if (r1.isEmpty()) {
-                return r2;
-            }
-
-            for (Map.Entry<String, Set<JavaType.Class>> r2Entry : r2.entrySet()) {
-                r1.compute(r2Entry.getKey(), (pkg, types) -> Stream.concat(
-                        types == null ? Stream.empty() : types.stream(),
-                        r2Entry.getValue().stream()
-                ).collect(toSet()));
-            }
-
-            return r1;
-        }
-
-        @Override
-        public Map<String, Set<JavaType.Class>> defaultTo(Tree t) {
-            return emptyMap();
-        }
-
-        @Override
-        public Map<String, Set<JavaType.Class>> visitTypeName(NameTree name) {
-            if (getCursor().firstEnclosing(J.Import.class) == null) {
-                JavaType.Class clazz = TypeUtils.asClass(name.getType());
-                if (clazz != null) {
-                    Map<String, Set<JavaType.Class>> typeByPackage = new HashMap<>();
-                    typeByPackage.put(clazz.getPackageName(), singleton(clazz));
-                    return typeByPackage;
-                }
-            }
-            return super.visitTypeName(name);
-        }
-    }
-
-    static class MethodsByType extends JavaSourceVisitor<Map<String, Set<String>>> {
-        @Override
-        public Map<String, Set<String>> reduce(Map<String, Set<String>> r1,
-                                               Map<String, Set<String>> r2) {
-            if (r1.isEmpty()) {
-                return r2;
-            }
-
-            for (Map.Entry<String, Set<String>> r2Entry : r2.entrySet()) {
-                r1.compute(r2Entry.getKey(), (pkg, types) -> Stream.concat(
-                        types == null ? Stream.empty() : types.stream(),
-                        r2Entry.getValue().stream()
-                ).collect(toSet()));
-            }
-
-            return r1;
-        }
-
-        @Override
-        public Map<String, Set<String>> defaultTo(Tree t) {
-            return emptyMap();
-        }
-
-        @Override
-        public Map<String, Set<String>> visitMethodInvocation(J.MethodInvocation method) {
-            if (method.getSelect() == null) {
-                JavaType.Method type = method.getType();
-                if (type != null && type.hasFlags(Flag.Static)) {
-                    Map<String, Set<String>> typeByPackage = new HashMap<>();
-                    typeByPackage.put(type.getDeclaringType().getFullyQualifiedName(), singleton(type.getName()));
-                    return typeByPackage;
-                }
-            }
-            return super.visitMethodInvocation(method);
-        }
-    }
 }
@@ -40,7 +40,7 @@ public class RenameVariable extends JavaRefactorVisitor {
 
     @Override
     public J visitCompilationUnit(J.CompilationUnit cu) {
-        scopeCursor = new RetrieveCursor(scope).visit(cu);
+        scopeCursor = cu.cursor(scope);
         scopeVariableName = ((J.VariableDecls.NamedVar) scopeCursor.getTree()).getSimpleName();
 
         return super.visitCompilationUnit(cu);
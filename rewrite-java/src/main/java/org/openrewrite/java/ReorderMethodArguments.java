@@ -24,9 +24,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.openrewrite.Validated.required;
 
-public class ReorderMethodArguments extends JavaRefactorVisitor {
+public class ReorderMethodArguments extends JavaRefactorVisitor implements MethodMatcherSet.Participant {
     private MethodMatcher methodMatcher;
     private String[] order;
     private String[] originalOrder = new String[0];
@@ -54,6 +56,11 @@ public class ReorderMethodArguments extends JavaRefactorVisitor {
                 .and(required("order", order));
     }
 
+    @Override
+    public Iterable<MethodMatcher> getMethodMatchers() {
+        return methodMatcher == null ? emptyList() : singletonList(methodMatcher);
+    }
+
     @Override
     public J visitMethodInvocation(J.MethodInvocation method) {
         if(methodMatcher.matches(method)) {
@@ -16,9 +16,14 @@
 package org.openrewrite.java;
 
 import org.openrewrite.Cursor;
+import org.openrewrite.CursorIndex;
 import org.openrewrite.Tree;
 import org.openrewrite.java.JavaSourceVisitor;
 
+/**
+ * Finds the cursor of one element of a tree with a traversal. When more than one element is looked up in the same
+ * compilation unit, {@link org.openrewrite.java.tree.J.CompilationUnit#getCursorIndex()} only traverses it once.
+ */
 public class RetrieveCursor extends JavaSourceVisitor<Cursor> {
     private final Tree scope;
 
@@ -39,4 +44,34 @@ public class RetrieveCursor extends JavaSourceVisitor<Cursor> {
         }
         return super.visitTree(tree);
     }
+
+    /**
+     * @param tree The root of a tree.
+     * @return The cursor of every element of the tree by its id.
+     */
+    public static CursorIndex index(Tree tree) {
+        CursorIndex.Builder builder = new CursorIndex.Builder();
+        new Indexer(builder).visit(tree);
+        return builder.build();
+    }
+
+    private static class Indexer extends JavaSourceVisitor<Void> {
+        private final CursorIndex.Builder builder;
+
+        private Indexer(CursorIndex.Builder builder) {
+            this.builder = builder;
+            setCursoringOn();
+        }
+
+        @Override
+        public Void defaultTo(Tree t) {
+            return null;
+        }
+
+        @Override
+        public Void visitTree(Tree tree) {
+            builder.add(getCursor());
+            return super.visitTree(tree);
+        }
+    }
 }
\ No newline at end of file
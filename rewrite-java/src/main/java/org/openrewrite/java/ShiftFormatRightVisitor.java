@@ -41,6 +41,11 @@ public class ShiftFormatRightVisitor extends JavaRefactorVisitor {
         setCursoringOn();
     }
 
+    @Override
+    public boolean isTypeAttributionRequired() {
+        return false;
+    }
+
     @Override
     public J visitElse(J.If.Else elze) {
         J.If.Else e = refactor(elze, super::visitElse);
@@ -26,6 +26,11 @@ public class UnwrapParentheses extends JavaRefactorVisitor {
         setCursoringOn();
     }
 
+    @Override
+    public boolean isTypeAttributionRequired() {
+        return false;
+    }
+
     @Override
     public <T extends J> J visitParentheses(J.Parentheses<T> parens) {
         return scope.isScope(parens) && isUnwrappable(getCursor()) ?
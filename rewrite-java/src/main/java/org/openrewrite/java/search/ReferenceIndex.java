@@ -0,0 +1,387 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.search;
+
+import org.openrewrite.InvertedIndex;
+import org.openrewrite.Tree;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaSourceVisitor;
+import org.openrewrite.java.MethodMatcher;
+import org.openrewrite.java.tree.*;
+
+import java.util.*;
+
+import static java.util.Collections.*;
+
+/**
+ * An immutable summary of what a compilation unit refers to and declares, built with a single traversal so that
+ * membership questions like "is this type referenced?" don't each need a traversal of their own.
+ * <p>
+ * The index is made of a part for the imports and a part for the package declaration and classes. A compilation unit
+ * whose imports change (the most common change, e.g. by {@link org.openrewrite.java.AddImport}) only rebuilds the
+ * imports part.
+ * <p>
+ * {@link #getTerms()} feeds a repository-wide {@link InvertedIndex}, e.g.
+ * <code>builder.sourceFile(cu.getSourcePath(), cu.getReferenceIndex().getTerms())</code>.
+ */
+public class ReferenceIndex {
+    private final List<J.Import> imports;
+    private final Part importsPart;
+    private final Part bodyPart;
+
+    private ReferenceIndex(List<J.Import> imports, Part importsPart, Part bodyPart) {
+        this.imports = imports;
+        this.importsPart = importsPart;
+        this.bodyPart = bodyPart;
+    }
+
+    public static ReferenceIndex build(J.CompilationUnit cu) {
+        List<J> body = new ArrayList<>(cu.getClasses().size() + 1);
+        if (cu.getPackageDecl() != null) {
+            body.add(cu.getPackageDecl());
+        }
+        body.addAll(cu.getClasses());
+
+        return new ReferenceIndex(cu.getImports(), new Collector(true).collect(cu.getImports()),
+                new Collector(false).collect(body));
+    }
+
+    /**
+     * @param imports The imports of a compilation unit whose package declaration and classes are the same as
+     *                those this index was built from.
+     * @return An index for the compilation unit.
+     */
+    public ReferenceIndex withImports(List<J.Import> imports) {
+        return imports == this.imports ? this :
+                new ReferenceIndex(imports, new Collector(true).collect(imports), bodyPart);
+    }
+
+    /**
+     * Equivalent to {@link HasImport}.
+     */
+    public boolean hasImport(String clazz) {
+        for (J.Import anImport : imports) {
+            if (anImport.isFromType(clazz)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Equivalent to {@link HasType}.
+     */
+    public boolean hasType(String clazz) {
+        return importsPart.typeNames.containsKey(clazz) || bodyPart.typeNames.containsKey(clazz);
+    }
+
+    /**
+     * Equivalent to {@link FindType}.
+     */
+    public Set<NameTree> findType(String clazz) {
+        Set<NameTree> names = Collections.newSetFromMap(new IdentityHashMap<>());
+        names.addAll(importsPart.typeNames.getOrDefault(clazz, emptyList()));
+        names.addAll(bodyPart.typeNames.getOrDefault(clazz, emptyList()));
+        return names;
+    }
+
+    /**
+     * Equivalent to {@link FindMethods}: an invocation nested in the arguments or select of a matching invocation is
+     * not reported on its own.
+     */
+    public List<J.MethodInvocation> findMethodCalls(MethodMatcher matcher) {
+        List<J.MethodInvocation> invocations = bodyPart.invocations;
+        boolean[] matched = new boolean[invocations.size()];
+
+        List<J.MethodInvocation> found = new ArrayList<>();
+        for (int i = 0; i < invocations.size(); i++) {
+            // invocations are in traversal order, so enclosing invocations have already been decided
+            if (!enclosedByMatch(i, matched) && matcher.matches(invocations.get(i))) {
+                matched[i] = true;
+                found.add(invocations.get(i));
+            }
+        }
+        return found;
+    }
+
+    private boolean enclosedByMatch(int invocation, boolean[] matched) {
+        for (int enclosing = bodyPart.enclosingInvocations[invocation]; enclosing != -1;
+             enclosing = bodyPart.enclosingInvocations[enclosing]) {
+            if (matched[enclosing]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The types named outside of imports.
+     */
+    public Set<JavaType.Class> getReferencedTypes() {
+        return unmodifiableSet(bodyPart.referencedTypes);
+    }
+
+    /**
+     * @return The types named outside of imports, by package name.
+     */
+    public Map<String, Set<JavaType.Class>> getReferencedTypesByPackage() {
+        return unmodifiableMap(bodyPart.referencedTypesByPackage);
+    }
+
+    /**
+     * @return The names of static methods invoked without a select (i.e. that may be statically imported), by the
+     * fully qualified name of their declaring type.
+     */
+    public Map<String, Set<String>> getUnqualifiedStaticMethodsByType() {
+        return unmodifiableMap(bodyPart.unqualifiedStaticMethodsByType);
+    }
+
+    public Set<JavaType.Method> getInvokedMethods() {
+        return unmodifiableSet(bodyPart.invokedMethods);
+    }
+
+    public Set<JavaType.Class> getAnnotationTypes() {
+        return unmodifiableSet(bodyPart.annotationTypes);
+    }
+
+    public Set<JavaType.Class> getDeclaredTypes() {
+        return unmodifiableSet(bodyPart.declaredTypes);
+    }
+
+    /**
+     * @return The simple names of declared methods, by the fully qualified name of their declaring type.
+     */
+    public Map<String, Set<String>> getDeclaredMethodsByType() {
+        return unmodifiableMap(bodyPart.declaredMethodsByType);
+    }
+
+    /**
+     * @return What this compilation unit refers to, as terms of a repository-wide {@link InvertedIndex}.
+     */
+    public Set<InvertedIndex.Term> getTerms() {
+        Set<InvertedIndex.Term> terms = new HashSet<>();
+
+        for (String type : importsPart.typeNames.keySet()) {
+            terms.add(InvertedIndex.Term.type(type));
+        }
+        for (String type : bodyPart.typeNames.keySet()) {
+            terms.add(InvertedIndex.Term.type(type));
+        }
+        for (String type : bodyPart.unnamedTypes) {
+            terms.add(InvertedIndex.Term.type(type));
+        }
+
+        for (JavaType.Method method : bodyPart.invokedMethods) {
+            // a type can be used without being named, e.g. as the select of a chained invocation
+            if (method.getDeclaringType() != null) {
+                terms.add(InvertedIndex.Term.type(method.getDeclaringType().getFullyQualifiedName()));
+            }
+            terms.add(InvertedIndex.Term.method(signature(method)));
+            terms.add(InvertedIndex.Term.methodName(method.getName()));
+        }
+
+        for (JavaType.Class annotationType : bodyPart.annotationTypes) {
+            terms.add(InvertedIndex.Term.annotation(annotationType.getFullyQualifiedName()));
+        }
+
+        return terms;
+    }
+
+    /**
+     * @return A method's declaring type, name, and resolved parameter types, e.g.
+     * <code>java.util.List add(java.lang.Object)</code>.
+     */
+    static String signature(JavaType.Method method) {
+        StringBuilder signature = new StringBuilder(method.getDeclaringType() == null ? "" :
+                method.getDeclaringType().getFullyQualifiedName())
+                .append(' ')
+                .append(method.getName())
+                .append('(');
+
+        JavaType.Method.Signature resolved = method.getResolvedSignature();
+        if (resolved != null) {
+            for (int i = 0; i < resolved.getParamTypes().size(); i++) {
+                if (i > 0) {
+                    signature.append(',');
+                }
+                appendParamType(signature, resolved.getParamTypes().get(i));
+            }
+        }
+
+        return signature.append(')').toString();
+    }
+
+    private static void appendParamType(StringBuilder signature, @Nullable JavaType type) {
+        if (type instanceof JavaType.FullyQualified) {
+            signature.append(((JavaType.FullyQualified) type).getFullyQualifiedName());
+        } else if (type instanceof JavaType.Primitive) {
+            signature.append(((JavaType.Primitive) type).getKeyword());
+        } else if (type instanceof JavaType.Array) {
+            appendParamType(signature, ((JavaType.Array) type).getElemType());
+            signature.append("[]");
+        }
+    }
+
+    private static class Part {
+        final Map<String, List<NameTree>> typeNames = new HashMap<>();
+        final Set<JavaType.Class> referencedTypes = new HashSet<>();
+        final Map<String, Set<JavaType.Class>> referencedTypesByPackage = new HashMap<>();
+        final Map<String, Set<String>> unqualifiedStaticMethodsByType = new HashMap<>();
+
+        /**
+         * Types that are used without being named, e.g. of a <code>var</code>, of an inferred lambda parameter, or of
+         * the select of a chained invocation.
+         */
+        final Set<String> unnamedTypes = new HashSet<>();
+
+        final List<J.MethodInvocation> invocations = new ArrayList<>();
+        int[] enclosingInvocations = new int[0];
+        final Set<JavaType.Method> invokedMethods = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        final Set<JavaType.Class> annotationTypes = new HashSet<>();
+
+        final Set<JavaType.Class> declaredTypes = new HashSet<>();
+        final Map<String, Set<String>> declaredMethodsByType = new HashMap<>();
+    }
+
+    private static class Collector extends JavaSourceVisitor<Void> {
+        private final Part part = new Part();
+        private final boolean imports;
+
+        private final List<Integer> enclosingInvocations = new ArrayList<>();
+        private final Deque<Integer> invocationStack = new ArrayDeque<>();
+        private final Deque<JavaType.Class> classStack = new ArrayDeque<>();
+
+        /**
+         * @param imports Whether the trees to collect are imports, whose type names only count towards
+         *                {@link ReferenceIndex#hasType(String)} and {@link ReferenceIndex#findType(String)}.
+         */
+        Collector(boolean imports) {
+            this.imports = imports;
+        }
+
+        @Override
+        public Void defaultTo(@Nullable Tree t) {
+            return null;
+        }
+
+        Part collect(List<? extends J> trees) {
+            for (J tree : trees) {
+                visit(tree);
+            }
+
+            part.enclosingInvocations = new int[enclosingInvocations.size()];
+            for (int i = 0; i < enclosingInvocations.size(); i++) {
+                part.enclosingInvocations[i] = enclosingInvocations.get(i);
+            }
+            return part;
+        }
+
+        @Override
+        public Void visitTypeName(NameTree name) {
+            JavaType.Class clazz = TypeUtils.asClass(name.getType());
+            if (clazz != null) {
+                part.typeNames.computeIfAbsent(clazz.getFullyQualifiedName(), fqn -> new ArrayList<>(2)).add(name);
+                if (!imports) {
+                    part.referencedTypes.add(clazz);
+                    part.referencedTypesByPackage.computeIfAbsent(clazz.getPackageName(), pkg -> new HashSet<>()).add(clazz);
+                }
+            }
+            return super.visitTypeName(name);
+        }
+
+        @Override
+        public Void visitMethodInvocation(J.MethodInvocation method) {
+            if (method.getSelect() != null) {
+                addUnnamedType(method.getSelect().getType());
+            }
+
+            JavaType.Method type = method.getType();
+            if (type != null) {
+                part.invokedMethods.add(type);
+                if (method.getSelect() == null && type.getDeclaringType() != null && type.hasFlags(Flag.Static)) {
+                    part.unqualifiedStaticMethodsByType.computeIfAbsent(type.getDeclaringType().getFullyQualifiedName(),
+                            t -> new HashSet<>()).add(type.getName());
+                }
+            }
+
+            int index = part.invocations.size();
+            part.invocations.add(method);
+            enclosingInvocations.add(invocationStack.isEmpty() ? -1 : invocationStack.peek());
+
+            invocationStack.push(index);
+            try {
+                return super.visitMethodInvocation(method);
+            } finally {
+                invocationStack.pop();
+            }
+        }
+
+        @Override
+        public Void visitVariable(J.VariableDecls.NamedVar variable) {
+            addUnnamedType(variable.getType());
+            return super.visitVariable(variable);
+        }
+
+        private void addUnnamedType(@Nullable JavaType type) {
+            if (type instanceof JavaType.Method) {
+                // the select is itself an invocation, whose type is the method rather than what it returns
+                JavaType.Method.Signature signature = ((JavaType.Method) type).getResolvedSignature();
+                type = signature == null ? null : signature.getReturnType();
+            }
+
+            JavaType.Class clazz = TypeUtils.asClass(type);
+            if (clazz != null) {
+                part.unnamedTypes.add(clazz.getFullyQualifiedName());
+            }
+        }
+
+        @Override
+        public Void visitAnnotation(J.Annotation annotation) {
+            JavaType.Class type = TypeUtils.asClass(annotation.getType());
+            if (type != null) {
+                part.annotationTypes.add(type);
+            }
+            return super.visitAnnotation(annotation);
+        }
+
+        @Override
+        public Void visitClassDecl(J.ClassDecl classDecl) {
+            JavaType.Class type = TypeUtils.asClass(classDecl.getType());
+            if (type == null) {
+                return super.visitClassDecl(classDecl);
+            }
+
+            part.declaredTypes.add(type);
+            classStack.push(type);
+            try {
+                return super.visitClassDecl(classDecl);
+            } finally {
+                classStack.pop();
+            }
+        }
+
+        @Override
+        public Void visitMethod(J.MethodDecl method) {
+            JavaType.Class declaringType = classStack.peek();
+            if (declaringType != null) {
+                part.declaredMethodsByType.computeIfAbsent(declaringType.getFullyQualifiedName(), t -> new HashSet<>())
+                        .add(method.getSimpleName());
+            }
+            return super.visitMethod(method);
+        }
+    }
+}
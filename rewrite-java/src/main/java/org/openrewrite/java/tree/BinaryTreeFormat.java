@@ -0,0 +1,1111 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.tree;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.openrewrite.Formatting;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.beans.ConstructorProperties;
+import java.io.*;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The compact binary encoding of Java ASTs written by {@link TreeSerializer}.
+ * <p>
+ * A stream starts with a header ({@link #MAGIC} and {@link #VERSION}), followed by any number of top-level values
+ * and an end tag. Every value starts with a one byte tag. Strings, classes, formatting, and types are written in full
+ * only the first time they occur in a stream and are referred to by a varint index after that, so a type that is
+ * shared by many nodes (or by many compilation units in the same stream) is written once. A node that occurs more than
+ * once in the same top-level value is written once, too. Between top-level values, the string and formatting tables
+ * may be started over, so that a reader's memory doesn't grow with the length of the stream.
+ * <p>
+ * The statements of class and method bodies are written as length-prefixed sections, so that a reader can skip
+ * over them and only decode them when they are first asked for (see {@link LazyList}). Anything that a section
+ * defines is only visible within the section, so skipping it doesn't throw off the tables of the rest of the stream.
+ * <p>
+ * The properties of an object are the parameters of its {@link JsonCreator} or, failing that, of the constructor
+ * that lombok annotates with {@link ConstructorProperties}. They are written in parameter order without names, and
+ * are read back through the same creator, so that types and identifiers are interned as they are when parsing.
+ */
+final class BinaryTreeFormat {
+    static final byte[] MAGIC = {'R', 'W', 'L', 'S', 'T'};
+
+    /**
+     * Changes whenever a change to this format or to the properties of a serialized class makes earlier streams
+     * unreadable.
+     */
+    static final int VERSION = 2;
+
+    private static final byte END = 0;
+    private static final byte NULL = 1;
+    private static final byte TRUE = 2;
+    private static final byte FALSE = 3;
+    private static final byte STRING = 4;
+    private static final byte INT = 5;
+    private static final byte LONG = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte FLOAT = 8;
+    private static final byte CHAR = 9;
+    private static final byte BYTE = 10;
+    private static final byte SHORT = 11;
+    private static final byte UUID_VALUE = 12;
+    private static final byte LIST = 13;
+    private static final byte SET = 14;
+    private static final byte MAP = 15;
+    private static final byte ENUM = 16;
+    private static final byte FORMATTING = 17;
+    private static final byte TYPE = 18;
+    private static final byte NODE = 19;
+    private static final byte NODE_REF = 20;
+    private static final byte OBJECT = 21;
+    private static final byte RESET_STRINGS = 22;
+    private static final byte SECTION = 23;
+
+    /**
+     * Types and classes are few and interned anyway, but the distinct strings and formatting of a long stream (e.g.
+     * the comments of every compilation unit in a repository) are not, so their tables are started over once they
+     * get this big.
+     */
+    static final int MAX_SHARED_STRINGS = 1 << 16;
+
+    private static final Map<Class<?>, Shape> shapes = new ConcurrentHashMap<>();
+
+    private BinaryTreeFormat() {
+    }
+
+    static boolean hasMagic(byte[] bytes, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Shape shape(Class<?> type) {
+        Shape shape = shapes.get(type);
+        if (shape == null) {
+            shape = Shape.describe(type);
+            shapes.putIfAbsent(type, shape);
+        }
+        return shape;
+    }
+
+    /**
+     * How an object is taken apart into properties and put back together again.
+     */
+    private static class Shape {
+        private final Class<?> type;
+        private final Executable creator;
+        private final AccessibleObject[] accessors;
+
+        /**
+         * The index of the property that is the body of a class or method declaration, or -1.
+         */
+        private final int body;
+
+        /**
+         * The index of the property that holds the statements of a block, or -1.
+         */
+        private final int statements;
+
+        private Shape(Class<?> type, Executable creator, String[] properties) {
+            this.type = type;
+            this.creator = creator;
+            this.accessors = new AccessibleObject[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                accessors[i] = accessor(type, properties[i]);
+            }
+            creator.setAccessible(true);
+
+            List<String> propertyList = Arrays.asList(properties);
+            this.body = type == J.ClassDecl.class || type == J.MethodDecl.class ? propertyList.indexOf("body") : -1;
+            this.statements = type == J.Block.class ? propertyList.indexOf("statements") : -1;
+        }
+
+        static Shape describe(Class<?> type) {
+            for (Method method : type.getDeclaredMethods()) {
+                if (Modifier.isStatic(method.getModifiers()) && method.isAnnotationPresent(JsonCreator.class)) {
+                    return new Shape(type, method, jsonProperties(method));
+                }
+            }
+
+            Constructor<?> creator = null;
+            String[] properties = null;
+            for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+                if (constructor.isAnnotationPresent(JsonCreator.class)) {
+                    return new Shape(type, constructor, jsonProperties(constructor));
+                }
+
+                ConstructorProperties constructorProperties = constructor.getAnnotation(ConstructorProperties.class);
+                if (constructorProperties != null && (properties == null ||
+                        constructorProperties.value().length > properties.length)) {
+                    creator = constructor;
+                    properties = constructorProperties.value();
+                }
+            }
+
+            if (creator == null) {
+                throw new IllegalArgumentException("No creator to serialize " + type.getName() + " with");
+            }
+            return new Shape(type, creator, properties);
+        }
+
+        private static String[] jsonProperties(Executable creator) {
+            Parameter[] parameters = creator.getParameters();
+            String[] properties = new String[parameters.length];
+            for (int i = 0; i < parameters.length; i++) {
+                JsonProperty property = parameters[i].getAnnotation(JsonProperty.class);
+                if (property == null) {
+                    throw new IllegalArgumentException("Parameter " + i + " of the creator of " +
+                            creator.getDeclaringClass().getName() + " is not a @JsonProperty");
+                }
+                properties[i] = property.value();
+            }
+            return properties;
+        }
+
+        /**
+         * A field is preferred over a getter, since some getters compute a value when the field hasn't been set
+         * (e.g. {@link JavaType.Class#getConstructors()}), and the unset field is what should round trip.
+         */
+        private static AccessibleObject accessor(Class<?> type, String property) {
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                try {
+                    Field field = c.getDeclaredField(property);
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        return field;
+                    }
+                } catch (NoSuchFieldException ignored) {
+                    // keep looking
+                }
+            }
+
+            String capitalized = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+            for (String getter : new String[]{"get" + capitalized, "is" + capitalized}) {
+                try {
+                    Method method = type.getMethod(getter);
+                    method.setAccessible(true);
+                    return method;
+                } catch (NoSuchMethodException ignored) {
+                    // keep looking
+                }
+            }
+
+            throw new IllegalArgumentException("No field or getter for property '" + property + "' of " + type.getName());
+        }
+
+        int size() {
+            return accessors.length;
+        }
+
+        Object get(Object value, int property) {
+            AccessibleObject accessor = accessors[property];
+            try {
+                return accessor instanceof Field ?
+                        ((Field) accessor).get(value) :
+                        ((Method) accessor).invoke(value);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Unable to read a property of " + type.getName(), e);
+            }
+        }
+
+        Object create(Object[] properties) {
+            try {
+                return creator instanceof Method ?
+                        ((Method) creator).invoke(null, properties) :
+                        ((Constructor<?>) creator).newInstance(properties);
+            } catch (IllegalAccessException | InstantiationException e) {
+                throw new IllegalStateException("Unable to create " + type.getName(), e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalStateException("Unable to create " + type.getName(), e.getCause());
+            }
+        }
+    }
+
+    static class Writer {
+        private final OutputStream out;
+        private final byte[] buffer;
+        private int position = 0;
+
+        /**
+         * The writer of the enclosing stream when this one writes a section. What the enclosing stream has defined
+         * so far can be referred to, and what this one defines continues the numbering of the enclosing tables.
+         */
+        @Nullable
+        private final Writer parent;
+
+        private final int stringBase;
+        private final int classBase;
+        private final int formattingBase;
+        private final int typeBase;
+        private final int nodeBase;
+
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<Class<?>, Integer> classes = new HashMap<>();
+        private final Map<Formatting, Integer> formatting = new IdentityHashMap<>();
+        private final Map<JavaType, Integer> types = new IdentityHashMap<>();
+
+        // only within one top-level value, so the table doesn't grow with the length of the stream
+        private final Map<J, Integer> nodes = new IdentityHashMap<>();
+
+        Writer(OutputStream out) throws IOException {
+            this(out, null, 8192);
+            writeBytes(MAGIC, 0, MAGIC.length);
+            writeVarint(VERSION);
+        }
+
+        private Writer(OutputStream out, @Nullable Writer parent, int bufferSize) {
+            this.out = out;
+            this.buffer = new byte[bufferSize];
+            this.parent = parent;
+            this.stringBase = parent == null ? 0 : parent.stringCount();
+            this.classBase = parent == null ? 0 : parent.classCount();
+            this.formattingBase = parent == null ? 0 : parent.formattingCount();
+            this.typeBase = parent == null ? 0 : parent.typeCount();
+            this.nodeBase = parent == null ? 0 : parent.nodeCount();
+        }
+
+        void write(@Nullable Object value) throws IOException {
+            try {
+                writeValue(value);
+            } finally {
+                nodes.clear();
+            }
+
+            if (strings.size() + formatting.size() > MAX_SHARED_STRINGS) {
+                writeByte(RESET_STRINGS);
+                strings.clear();
+                formatting.clear();
+            }
+        }
+
+        /**
+         * Ends the stream and flushes it, without closing the underlying output stream.
+         */
+        void finish() throws IOException {
+            writeByte(END);
+            flush();
+        }
+
+        void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+            out.flush();
+        }
+
+        private void writeValue(@Nullable Object value) throws IOException {
+            if (value == null) {
+                writeByte(NULL);
+            } else if (value instanceof String) {
+                writeByte(STRING);
+                writeString((String) value);
+            } else if (value instanceof Formatting) {
+                writeFormatting((Formatting) value);
+            } else if (value instanceof Enum) {
+                writeByte(ENUM);
+                writeClass(((Enum<?>) value).getDeclaringClass(), 0);
+                writeString(((Enum<?>) value).name());
+            } else if (value instanceof JavaType) {
+                writeType((JavaType) value);
+            } else if (value instanceof J) {
+                writeNode((J) value, false);
+            } else if (value instanceof List) {
+                writeByte(LIST);
+                writeElements((List<?>) value);
+            } else if (value instanceof Set) {
+                writeByte(SET);
+                writeElements((Set<?>) value);
+            } else if (value instanceof Map) {
+                writeByte(MAP);
+                Map<?, ?> map = (Map<?, ?>) value;
+                writeVarint(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            } else if (value instanceof UUID) {
+                writeByte(UUID_VALUE);
+                writeLong(((UUID) value).getMostSignificantBits());
+                writeLong(((UUID) value).getLeastSignificantBits());
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Integer) {
+                writeByte(INT);
+                writeVarlong(zigzag((Integer) value));
+            } else if (value instanceof Long) {
+                writeByte(LONG);
+                writeVarlong(zigzag((Long) value));
+            } else if (value instanceof Double) {
+                writeByte(DOUBLE);
+                writeLong(Double.doubleToRawLongBits((Double) value));
+            } else if (value instanceof Float) {
+                writeByte(FLOAT);
+                writeVarint(Float.floatToRawIntBits((Float) value));
+            } else if (value instanceof Character) {
+                writeByte(CHAR);
+                writeVarint((Character) value);
+            } else if (value instanceof Byte) {
+                writeByte(BYTE);
+                writeByte((Byte) value);
+            } else if (value instanceof Short) {
+                writeByte(SHORT);
+                writeVarlong(zigzag((Short) value));
+            } else {
+                writeByte(OBJECT);
+                writeProperties(value, false);
+            }
+        }
+
+        private void writeElements(Collection<?> elements) throws IOException {
+            writeVarint(elements.size());
+            for (Object element : elements) {
+                writeValue(element);
+            }
+        }
+
+        /**
+         * Writes a list into a section of its own, prefixed with the section's length so it can be skipped.
+         */
+        private void writeSection(List<?> elements) throws IOException {
+            ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream();
+            Writer section = new Writer(sectionBytes, this, 1024);
+            section.writeByte(LIST);
+            section.writeElements(elements);
+            section.flush();
+
+            writeByte(SECTION);
+            writeVarint(sectionBytes.size());
+            writeBytes(sectionBytes.toByteArray(), 0, sectionBytes.size());
+        }
+
+        private void writeFormatting(Formatting value) throws IOException {
+            writeByte(FORMATTING);
+            Integer id = formattingId(value);
+            if (id != null) {
+                writeVarint(id + 1);
+                return;
+            }
+            writeVarint(0);
+            writeString(value.getPrefix());
+            writeString(value.getSuffix());
+            formatting.put(value, formattingCount());
+        }
+
+        private void writeType(JavaType value) throws IOException {
+            writeByte(TYPE);
+            Integer id = typeId(value);
+            if (id != null) {
+                writeVarint(id + 1);
+                return;
+            }
+            writeVarint(0);
+            writeProperties(value, false);
+
+            // numbered after its properties, which is the order in which a reader can build them
+            types.put(value, typeCount());
+        }
+
+        private void writeNode(J value, boolean lazyStatements) throws IOException {
+            Integer id = nodeId(value);
+            if (id != null) {
+                writeByte(NODE_REF);
+                writeVarint(id);
+                return;
+            }
+            writeByte(NODE);
+            writeProperties(value, lazyStatements);
+            nodes.put(value, nodeCount());
+        }
+
+        private void writeProperties(Object value, boolean lazyStatements) throws IOException {
+            Shape shape = shape(value.getClass());
+            writeClass(value.getClass(), shape.size());
+            for (int i = 0; i < shape.size(); i++) {
+                Object property = shape.get(value, i);
+                if (i == shape.body && property instanceof J.Block) {
+                    writeNode((J) property, true);
+                } else if (lazyStatements && i == shape.statements && property instanceof List) {
+                    writeSection((List<?>) property);
+                } else {
+                    writeValue(property);
+                }
+            }
+        }
+
+        /**
+         * The number of properties is written with the class name so that a reader whose class has different
+         * properties fails fast instead of misreading everything that follows.
+         */
+        private void writeClass(Class<?> clazz, int size) throws IOException {
+            Integer id = classId(clazz);
+            if (id != null) {
+                writeVarint(id + 1);
+                return;
+            }
+            writeVarint(0);
+            writeString(clazz.getName());
+            writeVarint(size);
+            classes.put(clazz, classCount());
+        }
+
+        private void writeString(String value) throws IOException {
+            Integer id = stringId(value);
+            if (id != null) {
+                writeVarint(id + 1);
+                return;
+            }
+            writeVarint(0);
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+            strings.put(value, stringCount());
+        }
+
+        @Nullable
+        private Integer stringId(String value) {
+            Integer id = strings.get(value);
+            return id != null || parent == null ? id : parent.stringId(value);
+        }
+
+        @Nullable
+        private Integer classId(Class<?> value) {
+            Integer id = classes.get(value);
+            return id != null || parent == null ? id : parent.classId(value);
+        }
+
+        @Nullable
+        private Integer formattingId(Formatting value) {
+            Integer id = formatting.get(value);
+            return id != null || parent == null ? id : parent.formattingId(value);
+        }
+
+        @Nullable
+        private Integer typeId(JavaType value) {
+            Integer id = types.get(value);
+            return id != null || parent == null ? id : parent.typeId(value);
+        }
+
+        /**
+         * Like the other tables, a section refers to nodes that the enclosing stream finished writing before the
+         * section began rather than writing them again. A section therefore is not self-contained, and can only be
+         * decoded with the enclosing tables as they were when it was read, which is what {@link Tables#section()}
+         * keeps. It is the other way round that a node is written again: what a section defines isn't visible after
+         * it, so a node first written inside a section and shared with the rest of the tree is written in full again.
+         */
+        @Nullable
+        private Integer nodeId(J value) {
+            Integer id = nodes.get(value);
+            return id != null || parent == null ? id : parent.nodeId(value);
+        }
+
+        private int stringCount() {
+            return stringBase + strings.size();
+        }
+
+        private int classCount() {
+            return classBase + classes.size();
+        }
+
+        private int formattingCount() {
+            return formattingBase + formatting.size();
+        }
+
+        private int typeCount() {
+            return typeBase + types.size();
+        }
+
+        private int nodeCount() {
+            return nodeBase + nodes.size();
+        }
+
+        private static long zigzag(long value) {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        private void writeVarint(int value) throws IOException {
+            writeVarlong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarlong(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeLong(long value) throws IOException {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void writeByte(int value) throws IOException {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+            if (length > buffer.length) {
+                out.write(buffer, 0, position);
+                position = 0;
+                out.write(bytes, offset, length);
+                return;
+            }
+            ensure(length);
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+        }
+
+        private void ensure(int length) throws IOException {
+            if (position + length > buffer.length) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+        }
+    }
+
+    static class Reader {
+        private final InputStream in;
+        private final byte[] buffer;
+        private int position = 0;
+        private int limit = 0;
+
+        /**
+         * When true, sections are kept as undecoded bytes until they are first asked for.
+         */
+        private final boolean lazy;
+
+        private Tables tables;
+
+        private boolean ended = false;
+
+        Reader(InputStream in) throws IOException {
+            this(in, false);
+        }
+
+        Reader(InputStream in, boolean lazy) throws IOException {
+            this(in, lazy, new Tables(), 8192);
+            for (byte b : MAGIC) {
+                if (readByte() != b) {
+                    throw new IOException("Not a serialized Java AST");
+                }
+            }
+            int version = readVarint();
+            if (version != VERSION) {
+                throw new IOException("Serialized Java AST has version " + version + ", but only version " +
+                        VERSION + " can be read");
+            }
+        }
+
+        private Reader(InputStream in, boolean lazy, Tables tables, int bufferSize) {
+            this.in = in;
+            this.lazy = lazy;
+            this.tables = tables;
+            this.buffer = new byte[bufferSize];
+        }
+
+        /**
+         * Reads a section that has already been read into memory in its entirety.
+         */
+        private Reader(byte[] section, Tables tables) {
+            this.in = new ByteArrayInputStream(new byte[0]);
+            this.lazy = true;
+            this.tables = tables;
+            this.buffer = section;
+            this.limit = section.length;
+        }
+
+        /**
+         * @return false once the end of the stream has been read.
+         */
+        boolean hasNext() throws IOException {
+            while (!ended) {
+                byte tag = peekByte();
+                if (tag == RESET_STRINGS) {
+                    readByte();
+                    tables = tables.withoutStrings();
+                } else if (tag == END) {
+                    readByte();
+                    ended = true;
+                } else {
+                    break;
+                }
+            }
+            return !ended;
+        }
+
+        @Nullable
+        Object read() throws IOException {
+            if (!hasNext()) {
+                throw new EOFException("No more values in the serialized Java AST");
+            }
+            try {
+                return readValue();
+            } finally {
+                // sections that haven't been decoded yet keep the tables they were read with
+                tables = tables.withoutNodes();
+            }
+        }
+
+        @Nullable
+        private Object readValue() throws IOException {
+            byte tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case STRING:
+                    return readString();
+                case INT:
+                    return (int) unzigzag(readVarlong());
+                case LONG:
+                    return unzigzag(readVarlong());
+                case DOUBLE:
+                    return Double.longBitsToDouble(readLong());
+                case FLOAT:
+                    return Float.intBitsToFloat(readVarint());
+                case CHAR:
+                    return (char) readVarint();
+                case BYTE:
+                    return readByte();
+                case SHORT:
+                    return (short) unzigzag(readVarlong());
+                case UUID_VALUE:
+                    return new UUID(readLong(), readLong());
+                case LIST: {
+                    int size = readVarint();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                }
+                case SET: {
+                    int size = readVarint();
+                    Set<Object> set = new LinkedHashSet<>();
+                    for (int i = 0; i < size; i++) {
+                        set.add(readValue());
+                    }
+                    return set;
+                }
+                case MAP: {
+                    int size = readVarint();
+                    Map<Object, Object> map = new LinkedHashMap<>();
+                    for (int i = 0; i < size; i++) {
+                        map.put(readValue(), readValue());
+                    }
+                    return map;
+                }
+                case ENUM:
+                    return readEnum();
+                case FORMATTING:
+                    return readFormatting();
+                case TYPE:
+                    return readType();
+                case NODE: {
+                    J node = (J) readProperties();
+                    tables.nodes.add(node);
+                    return node;
+                }
+                case NODE_REF:
+                    return tables.node(readVarint());
+                case OBJECT:
+                    return readProperties();
+                case SECTION:
+                    return readSection();
+                default:
+                    throw new IOException("Unknown tag " + tag + " in serialized Java AST");
+            }
+        }
+
+        private Object readSection() throws IOException {
+            int length = readVarint();
+            Tables sectionTables = tables.section();
+
+            if (lazy) {
+                return new LazyList<>(readBytes(length), sectionTables, TypeCache.current());
+            }
+
+            // decoded in place, but with tables of its own, as it would have been if it were lazy
+            Tables enclosing = tables;
+            tables = sectionTables;
+            try {
+                return readValue();
+            } finally {
+                tables = enclosing;
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object readEnum() throws IOException {
+            Class<? extends Enum> enumClass = (Class<? extends Enum>) readClass();
+            return Enum.valueOf(enumClass, readString());
+        }
+
+        private Formatting readFormatting() throws IOException {
+            int ref = readVarint();
+            if (ref != 0) {
+                return tables.formatting(ref - 1);
+            }
+            Formatting value = Formatting.format(readString(), readString());
+            tables.formatting.add(value);
+            return value;
+        }
+
+        private JavaType readType() throws IOException {
+            int ref = readVarint();
+            if (ref != 0) {
+                return tables.type(ref - 1);
+            }
+            JavaType type = (JavaType) readProperties();
+            tables.types.add(type);
+            return type;
+        }
+
+        private Object readProperties() throws IOException {
+            Shape shape = shape(readClass());
+            Object[] properties = new Object[shape.size()];
+            for (int i = 0; i < properties.length; i++) {
+                properties[i] = readValue();
+            }
+            return shape.create(properties);
+        }
+
+        private Class<?> readClass() throws IOException {
+            int ref = readVarint();
+            if (ref != 0) {
+                return tables.clazz(ref - 1);
+            }
+
+            String name = readString();
+            int size = readVarint();
+
+            Class<?> clazz;
+            try {
+                clazz = Class.forName(name, false, BinaryTreeFormat.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Serialized Java AST refers to unknown class " + name, e);
+            }
+
+            if (!clazz.isEnum() && shape(clazz).size() != size) {
+                throw new IOException("Serialized Java AST has " + size + " properties for " + name +
+                        ", but " + shape(clazz).size() + " are expected");
+            }
+
+            tables.classes.add(clazz);
+            return clazz;
+        }
+
+        private String readString() throws IOException {
+            int ref = readVarint();
+            if (ref != 0) {
+                return tables.string(ref - 1);
+            }
+            int length = readVarint();
+            String value;
+            if (length <= buffer.length) {
+                require(length);
+                value = new String(buffer, position, length, UTF_8);
+                position += length;
+            } else {
+                value = new String(readBytes(length), UTF_8);
+            }
+            tables.strings.add(value);
+            return value;
+        }
+
+        private byte[] readBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int read = Math.min(limit - position, length);
+            System.arraycopy(buffer, position, bytes, 0, read);
+            position += read;
+            while (read < length) {
+                int n = in.read(bytes, read, length - read);
+                if (n < 0) {
+                    throw new EOFException("Serialized Java AST ended unexpectedly");
+                }
+                read += n;
+            }
+            return bytes;
+        }
+
+        private static long unzigzag(long value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private int readVarint() throws IOException {
+            return (int) readVarlong();
+        }
+
+        private long readVarlong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in serialized Java AST");
+        }
+
+        private long readLong() throws IOException {
+            require(8);
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        private byte peekByte() throws IOException {
+            require(1);
+            return buffer[position];
+        }
+
+        private byte readByte() throws IOException {
+            require(1);
+            return buffer[position++];
+        }
+
+        /**
+         * Makes sure that at least <code>length</code> bytes, which must fit in the buffer, can be read from it.
+         */
+        private void require(int length) throws IOException {
+            if (limit - position >= length) {
+                return;
+            }
+
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+
+            while (limit < length) {
+                int n = in.read(buffer, limit, buffer.length - limit);
+                if (n < 0) {
+                    throw new EOFException("Serialized Java AST ended unexpectedly");
+                }
+                limit += n;
+            }
+        }
+    }
+
+    /**
+     * What a reader has read so far. Tables are never cleared, only replaced, so a section that is decoded later
+     * sees them as they were when the section was read, no matter how much further the stream has been read since.
+     */
+    private static class Tables {
+        @Nullable
+        private final Tables parent;
+
+        private final int stringBase;
+        private final int classBase;
+        private final int formattingBase;
+        private final int typeBase;
+        private final int nodeBase;
+
+        final Table<String> strings;
+        final Table<Class<?>> classes;
+        final Table<Formatting> formatting;
+        final Table<JavaType> types;
+        final Table<J> nodes;
+
+        Tables() {
+            this(null, 0, 0, 0, 0, 0, new Table<>(), new Table<>(), new Table<>(), new Table<>(), new Table<>());
+        }
+
+        private Tables(@Nullable Tables parent, int stringBase, int classBase, int formattingBase, int typeBase, int nodeBase,
+                       Table<String> strings, Table<Class<?>> classes, Table<Formatting> formatting,
+                       Table<JavaType> types, Table<J> nodes) {
+            this.parent = parent;
+            this.stringBase = stringBase;
+            this.classBase = classBase;
+            this.formattingBase = formattingBase;
+            this.typeBase = typeBase;
+            this.nodeBase = nodeBase;
+            this.strings = strings;
+            this.classes = classes;
+            this.formatting = formatting;
+            this.types = types;
+            this.nodes = nodes;
+        }
+
+        /**
+         * @return Tables for a section, which can refer to everything read so far.
+         */
+        Tables section() {
+            return new Tables(this, stringBase + strings.size(), classBase + classes.size(),
+                    formattingBase + formatting.size(), typeBase + types.size(), nodeBase + nodes.size(),
+                    new Table<>(), new Table<>(), new Table<>(), new Table<>(), new Table<>());
+        }
+
+        Tables withoutStrings() {
+            return new Tables(parent, stringBase, classBase, formattingBase, typeBase, nodeBase,
+                    new Table<>(), classes, new Table<>(), types, new Table<>());
+        }
+
+        Tables withoutNodes() {
+            return new Tables(parent, stringBase, classBase, formattingBase, typeBase, nodeBase,
+                    strings, classes, formatting, types, new Table<>());
+        }
+
+        String string(int id) {
+            return id < stringBase ? parent.string(id) : strings.get(id - stringBase);
+        }
+
+        Class<?> clazz(int id) {
+            return id < classBase ? parent.clazz(id) : classes.get(id - classBase);
+        }
+
+        Formatting formatting(int id) {
+            return id < formattingBase ? parent.formatting(id) : formatting.get(id - formattingBase);
+        }
+
+        JavaType type(int id) {
+            return id < typeBase ? parent.type(id) : types.get(id - typeBase);
+        }
+
+        J node(int id) {
+            return id < nodeBase ? parent.node(id) : nodes.get(id - nodeBase);
+        }
+    }
+
+    /**
+     * An append-only list that can be read by other threads while one thread appends to it, as happens when a
+     * section is decoded while the stream it came from is still being read. Entries are stored in fixed-size chunks
+     * that never move, and the volatile size publishes every entry before it.
+     */
+    private static class Table<T> {
+        private static final int CHUNK_SIZE = 256;
+
+        private volatile Object[][] chunks = new Object[1][];
+        private volatile int size = 0;
+
+        void add(T value) {
+            int index = size;
+            int chunk = index / CHUNK_SIZE;
+            Object[][] chunks = this.chunks;
+            if (chunk == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunks.length * 2);
+            }
+            if (chunks[chunk] == null) {
+                chunks[chunk] = new Object[CHUNK_SIZE];
+            }
+            chunks[chunk][index % CHUNK_SIZE] = value;
+            this.chunks = chunks;
+            size = index + 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int index) {
+            if (index >= size) {
+                throw new IllegalStateException("Serialized Java AST refers to entry " + index + " of a table of " + size);
+            }
+            return (T) chunks[index / CHUNK_SIZE][index % CHUNK_SIZE];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The statements of a class or method body, which are only decoded when they are first asked for, so that
+     * visitors that never look inside a body don't pay to decode it. Decoded with the type cache that the rest of the
+     * tree was read with.
+     */
+    static class LazyList<T> extends AbstractList<T> implements RandomAccess, Serializable {
+        @Nullable
+        private volatile List<T> decoded;
+
+        @Nullable
+        private byte[] bytes;
+
+        @Nullable
+        private Tables tables;
+
+        @Nullable
+        private TypeCache typeCache;
+
+        private LazyList(byte[] bytes, Tables tables, TypeCache typeCache) {
+            this.bytes = bytes;
+            this.tables = tables;
+            this.typeCache = typeCache;
+        }
+
+        boolean isDecoded() {
+            return decoded != null;
+        }
+
+        @Override
+        public T get(int index) {
+            return decode().get(index);
+        }
+
+        @Override
+        public int size() {
+            return decode().size();
+        }
+
+        private Object writeReplace() {
+            return new ArrayList<>(decode());
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<T> decode() {
+            List<T> list = decoded;
+            if (list == null) {
+                synchronized (this) {
+                    list = decoded;
+                    if (list == null) {
+                        Reader reader = new Reader(bytes, tables);
+                        list = (List<T>) typeCache.run(() -> {
+                            try {
+                                return reader.readValue();
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                        decoded = list;
+
+                        // nothing else to decode, so let go of everything it took to decode it
+                        bytes = null;
+                        tables = null;
+                        typeCache = null;
+                    }
+                }
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.tree;
+
+import lombok.Value;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Collections.emptyMap;
+
+/**
+ * Class types converted from the jars of a parser's classpath, kept on disk from one run to the next. Dependency
+ * jars rarely change between runs, so rather than converting the types of a jar's classes again on every run,
+ * a parser can seed its {@link TypeCache} with the types stored for the jar.
+ * <p>
+ * Each jar has a file of its own, named after the jar and the checksum of its contents, so a changed jar is never
+ * seeded with the types of its previous version, and jars of the same name with different contents never share a
+ * file. The file holds the class types in the binary format of {@link TreeSerializer}, and is memory-mapped for
+ * reading.
+ */
+public class ClasspathTypeStore {
+    private final Path directory;
+
+    /**
+     * The checksums computed so far, by the jar's normalized absolute path, along with the size and modification
+     * time of the jar at the time. A jar is only read again when either of them changes.
+     */
+    private final Map<Path, Checksum> checksums = new ConcurrentHashMap<>();
+
+    public ClasspathTypeStore(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Reads the whole jar the first time it is asked for, and again only once the jar's size or modification time
+     * has changed, so that the parsers sharing this store don't read every jar of the classpath on every parse.
+     *
+     * @param jar A jar on the classpath.
+     * @return The checksum of the contents of the jar.
+     */
+    public String checksum(Path jar) {
+        try {
+            Path path = jar.toAbsolutePath().normalize();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            long size = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
+
+            Checksum checksum = checksums.get(path);
+            if (checksum == null || checksum.getSize() != size || checksum.getLastModified() != lastModified) {
+                checksum = new Checksum(size, lastModified, contentChecksum(path));
+                checksums.put(path, checksum);
+            }
+            return checksum.getValue();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String contentChecksum(Path jar) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (InputStream in = Files.newInputStream(jar)) {
+            byte[] buffer = new byte[1 << 16];
+            for (int n; (n = in.read(buffer)) >= 0; ) {
+                digest.update(buffer, 0, n);
+            }
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @param type A class type converted from a class of a jar.
+     * @return How much of the class the conversion filled in, which is more when it was converted from a class
+     * symbol that the compiler had completed further.
+     */
+    public static int completeness(JavaType.Class type) {
+        return type.getMembers().size() + type.getInterfaces().size() + (type.getSupertype() == null ? 0 : 1);
+    }
+
+    /**
+     * Reads the class types stored for a jar, interning them into the {@link TypeCache#current() current type cache}.
+     *
+     * @param jar      A jar on the classpath.
+     * @param checksum The {@link #checksum(Path) checksum} of the jar.
+     * @return The stored class types by fully qualified name, which are empty when nothing is stored for this
+     * version of the jar, or what is stored can't be read.
+     */
+    public Map<String, JavaType.Class> load(Path jar, String checksum) {
+        Path types = typesFile(jar, checksum);
+        if (!Files.exists(types)) {
+            return emptyMap();
+        }
+
+        try (FileChannel channel = FileChannel.open(types, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Object read = new BinaryTreeFormat.Reader(new TreeStore.ByteBufferInputStream(buffer)).read();
+
+            Map<String, JavaType.Class> classes = new HashMap<>();
+            if (read instanceof List) {
+                for (Object type : (List<?>) read) {
+                    if (type instanceof JavaType.Class) {
+                        classes.put(((JavaType.Class) type).getFullyQualifiedName(), (JavaType.Class) type);
+                    }
+                }
+            }
+            return classes;
+        } catch (IOException | RuntimeException ignored) {
+            // a corrupt or outdated store only costs converting the types again
+            return emptyMap();
+        }
+    }
+
+    /**
+     * Stores the class types of a jar, replacing whatever is stored for this version of the jar.
+     *
+     * @param jar      A jar on the classpath.
+     * @param checksum The {@link #checksum(Path) checksum} of the jar.
+     * @param classes  Class types of classes in the jar.
+     */
+    public void save(Path jar, String checksum, Collection<JavaType.Class> classes) {
+        try {
+            Files.createDirectories(directory);
+            Path types = typesFile(jar, checksum);
+            Path temp = Files.createTempFile(directory, types.getFileName().toString(), ".tmp");
+
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                BinaryTreeFormat.Writer writer = new BinaryTreeFormat.Writer(out);
+                writer.write(new ArrayList<>(classes));
+                writer.finish();
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+
+            try {
+                Files.move(temp, types, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, types, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path typesFile(Path jar, String checksum) {
+        return directory.resolve(jar.getFileName().toString() + "-" + checksum + ".types");
+    }
+
+    @Value
+    private static class Checksum {
+        long size;
+        long lastModified;
+        String value;
+    }
+}
@@ -16,13 +16,15 @@
 package org.openrewrite.java.tree;
 
 import com.fasterxml.jackson.annotation.*;
-import com.koloboke.collect.map.hash.HashObjObjMaps;
 import lombok.*;
 import lombok.experimental.FieldDefaults;
 import org.openrewrite.*;
 import org.openrewrite.internal.lang.NonNull;
 import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaParser;
 import org.openrewrite.java.JavaSourceVisitor;
+import org.openrewrite.java.MethodMatcher;
+import org.openrewrite.java.RetrieveCursor;
 import org.openrewrite.java.internal.PrintJava;
 import org.openrewrite.java.search.*;
 
@@ -30,6 +32,7 @@ import java.io.Serializable;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -1085,7 +1088,6 @@ public interface J extends Serializable, Tree {
         @Nullable
         Package packageDecl;
 
-        @With
         List<Import> imports;
 
         @With
@@ -1094,31 +1096,126 @@ public interface J extends Serializable, Tree {
         @With
         Formatting formatting;
 
+        /**
+         * Built the first time it is needed. Not part of the constructor, so every changed copy of this
+         * compilation unit starts without one.
+         */
+        @Getter(AccessLevel.NONE)
+        @ToString.Exclude
+        @JsonIgnore
+        transient AtomicReference<ReferenceIndex> referenceIndex = new AtomicReference<>();
+
+        /**
+         * Built the first time it is needed, and never carried over to a changed copy, whose cursors are different.
+         */
+        @Getter(AccessLevel.NONE)
+        @ToString.Exclude
+        @JsonIgnore
+        transient AtomicReference<CursorIndex> cursorIndex = new AtomicReference<>();
+
+        public CompilationUnit withImports(List<Import> imports) {
+            if (imports == this.imports) {
+                return this;
+            }
+
+            CompilationUnit cu = new CompilationUnit(id, sourcePath, metadata, packageDecl, imports, classes, formatting);
+
+            // the package declaration and classes haven't changed, so only the imports have to be indexed again
+            ReferenceIndex index = referenceIndex == null ? null : referenceIndex.get();
+            if (index != null) {
+                cu.referenceIndex.set(index.withImports(imports));
+            }
+
+            return cu;
+        }
+
         @Override
         public <R> R acceptJava(JavaSourceVisitor<R> v) {
             return v.visitCompilationUnit(this);
         }
 
+        /**
+         * @return A summary of the types, imports, and methods this compilation unit refers to and declares.
+         */
+        @JsonIgnore
+        public ReferenceIndex getReferenceIndex() {
+            if (referenceIndex == null) {
+                // deserialized with java.io serialization, which doesn't run field initializers
+                return ReferenceIndex.build(this);
+            }
+
+            ReferenceIndex index = referenceIndex.get();
+            if (index == null) {
+                index = ReferenceIndex.build(this);
+                if (!referenceIndex.compareAndSet(null, index)) {
+                    index = referenceIndex.get();
+                }
+            }
+            return index;
+        }
+
+        /**
+         * @return The cursor of every element of this compilation unit by its id.
+         */
+        @JsonIgnore
+        public CursorIndex getCursorIndex() {
+            if (cursorIndex == null) {
+                // deserialized with java.io serialization, which doesn't run field initializers
+                return RetrieveCursor.index(this);
+            }
+
+            CursorIndex index = cursorIndex.get();
+            if (index == null) {
+                index = RetrieveCursor.index(this);
+                if (!cursorIndex.compareAndSet(null, index)) {
+                    index = cursorIndex.get();
+                }
+            }
+            return index;
+        }
+
+        /**
+         * @param tree An element of this compilation unit.
+         * @return Its cursor, or null if it isn't an element of this compilation unit.
+         */
+        @Nullable
+        public Cursor cursor(Tree tree) {
+            return getCursorIndex().cursor(tree);
+        }
+
         public boolean hasImport(String clazz) {
-            return new HasImport(clazz).visit(this);
+            return getReferenceIndex().hasImport(clazz);
         }
 
         public boolean hasType(String clazz) {
-            return new HasType(clazz).visit(this);
+            return getReferenceIndex().hasType(clazz);
         }
 
         public List<MethodInvocation> findMethodCalls(String signature) {
-            return new FindMethods(signature).visit(this);
+            return getReferenceIndex().findMethodCalls(new MethodMatcher(signature));
         }
 
         public Set<NameTree> findType(String clazz) {
-            return new FindType(clazz).visit(this);
+            return getReferenceIndex().findType(clazz);
         }
 
         public Refactor<CompilationUnit> refactor() {
             return new Refactor<>(this);
         }
 
+        /**
+         * @param typeCache The cache this compilation unit was built in, e.g. {@link JavaParser#getTypeCache()}.
+         * @return A refactoring operation whose visitors intern the types and identifiers they build in that cache.
+         */
+        public Refactor<CompilationUnit> refactor(TypeCache typeCache) {
+            return new Refactor<CompilationUnit>(this) {
+                @Override
+                public Change<CompilationUnit> fix(int maxCycles) {
+                    return typeCache.run(() -> super.fix(maxCycles));
+                }
+            };
+        }
+
         /**
          * Because Jackson will not place a polymorphic type tag on the root of the AST when we are serializing a list of ASTs together
          */
@@ -1448,8 +1545,6 @@ public interface J extends Serializable, Tree {
     @EqualsAndHashCode(callSuper = false, onlyExplicitlyIncluded = true)
     @Getter
     class Ident implements J, TypeTree, Expression {
-        private static final Map<String, Map<JavaType, IdentFlyweight>> flyweights = HashObjObjMaps.newMutableMap();
-
         @EqualsAndHashCode.Include
         UUID id;
 
@@ -1494,15 +1589,7 @@ public interface J extends Serializable, Tree {
                                   @JsonProperty("simpleName") String simpleName,
                                   @JsonProperty("type") @Nullable JavaType type,
                                   @JsonProperty("formatting") Formatting formatting) {
-            synchronized (flyweights) {
-                return new Ident(
-                        id,
-                        flyweights
-                                .computeIfAbsent(simpleName, n -> HashObjObjMaps.newMutableMap())
-                                .computeIfAbsent(type, t -> new IdentFlyweight(simpleName, t)),
-                        formatting
-                );
-            }
+            return new Ident(id, TypeCache.current().idents.intern(new IdentFlyweight(simpleName, type)), formatting);
         }
 
         public static Ident buildClassName(String fullyQualifiedName) {
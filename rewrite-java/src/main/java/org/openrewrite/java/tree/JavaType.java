@@ -16,9 +16,7 @@
 package org.openrewrite.java.tree;
 
 import com.fasterxml.jackson.annotation.*;
-import com.koloboke.collect.map.hash.HashObjObjMaps;
-import com.koloboke.collect.set.hash.HashObjSet;
-import com.koloboke.collect.set.hash.HashObjSets;
+import lombok.AccessLevel;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -29,12 +27,10 @@ import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Parameter;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singleton;
 import static java.util.Comparator.comparing;
-import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static org.openrewrite.Formatting.EMPTY;
 import static org.openrewrite.Tree.randomId;
@@ -73,35 +69,85 @@ public interface JavaType extends Serializable {
                     .withType(JavaType.Class.build(getFullyQualifiedName()));
         }
 
+        // name components are derived from the fully qualified name on first use, and types are interned,
+        // so import management doesn't have to split the same names over and over again
+        @Nullable
+        private transient String className;
+
+        @Nullable
+        private transient String packageName;
+
+        /**
+         * @return The name of the class, including the names of any outer classes, e.g. "Map.Entry" for "java.util.Map.Entry".
+         */
         @JsonIgnore
         public String getClassName() {
-            AtomicBoolean dropWhile = new AtomicBoolean(false);
-            return Arrays.stream(getFullyQualifiedName().split("\\."))
-                    .filter(part -> {
-                        dropWhile.set(dropWhile.get() || !Character.isLowerCase(part.charAt(0)));
-                        return dropWhile.get();
-                    })
-                    .collect(joining("."));
+            if (className == null) {
+                splitFullyQualifiedName();
+            }
+            return className;
         }
 
         @JsonIgnore
         public String getPackageName() {
-            AtomicBoolean takeWhile = new AtomicBoolean(true);
-            return Arrays.stream(getFullyQualifiedName().split("\\."))
-                    .filter(part -> {
-                        takeWhile.set(takeWhile.get() && !Character.isUpperCase(part.charAt(0)));
-                        return takeWhile.get();
-                    })
-                    .collect(joining("."));
+            if (packageName == null) {
+                splitFullyQualifiedName();
+            }
+            return packageName;
+        }
+
+        /**
+         * @return The name of the class without the names of any outer classes, e.g. "Entry" for "java.util.Map.Entry".
+         */
+        @JsonIgnore
+        public String getSimpleName() {
+            String className = getClassName();
+            return className.substring(className.lastIndexOf('.') + 1);
+        }
+
+        /**
+         * The class name starts at the first part that doesn't start with a lowercase letter, and the package
+         * name consists of the leading parts that don't start with an uppercase letter.
+         */
+        private void splitFullyQualifiedName() {
+            String fqn = getFullyQualifiedName();
+
+            int classStart = -1;
+            int packageEnd = 0;
+            boolean inPackage = true;
+
+            int partStart = 0;
+            while (true) {
+                int dot = fqn.indexOf('.', partStart);
+                int partEnd = dot == -1 ? fqn.length() : dot;
+                char first = partStart < partEnd ? fqn.charAt(partStart) : 0;
+
+                if (classStart == -1 && !Character.isLowerCase(first)) {
+                    classStart = partStart;
+                }
+
+                if (inPackage) {
+                    if (Character.isUpperCase(first)) {
+                        inPackage = false;
+                    } else {
+                        packageEnd = partEnd;
+                    }
+                }
+
+                if (dot == -1) {
+                    break;
+                }
+                partStart = dot + 1;
+            }
+
+            packageName = fqn.substring(0, packageEnd);
+            className = classStart == -1 ? "" : fqn.substring(classStart);
         }
 
         @JsonIgnore
         public boolean isAssignableFrom(@Nullable JavaType.Class clazz) {
             return clazz != null && (this == Class.OBJECT ||
-                    getFullyQualifiedName().equals(clazz.fullyQualifiedName) ||
-                    isAssignableFrom(clazz.getSupertype()) ||
-                    clazz.getInterfaces().stream().anyMatch(i -> i instanceof Class && isAssignableFrom((Class) i))
-            );
+                    clazz.getSupertypeClosure().contains(getFullyQualifiedName()));
         }
     }
 
@@ -123,10 +169,8 @@ public interface JavaType extends Serializable {
 
     @Getter
     class Class extends FullyQualified {
-        // there shouldn't be too many distinct types represented by the same fully qualified name
-        private static final Map<String, HashObjSet<Class>> flyweights = HashObjObjMaps.newMutableMap();
-
-        public static final Class OBJECT = build("java.lang.Object");
+        // not built through the type cache, because every type cache is seeded with this instance
+        public static final Class OBJECT = new Class("java.lang.Object", emptyList(), emptyList(), emptyList(), null, null);
 
         private final String fullyQualifiedName;
         private final List<Var> members;
@@ -139,6 +183,10 @@ public interface JavaType extends Serializable {
         @Nullable
         private final Class supertype;
 
+        @Getter(AccessLevel.NONE)
+        @Nullable
+        private transient volatile Set<String> supertypeClosure;
+
         private Class(String fullyQualifiedName,
                       List<Var> members,
                       List<JavaType> typeParameters,
@@ -156,8 +204,8 @@ public interface JavaType extends Serializable {
         /**
          * Build a class type only from the class' fully qualified name. Since we are not providing any member, type parameter,
          * interface, or supertype information, this fully qualified name could potentially match on more than one version of
-         * the class found in the type cache. This method will simply pick one of them, because there is no way of selecting
-         * between the versions of the class based solely on the fully qualified class name.
+         * the class found in the {@link TypeCache#current() current type cache}. This method will simply pick one of them,
+         * because there is no way of selecting between the versions of the class based solely on the fully qualified class name.
          *
          * @param fullyQualifiedName The fully qualified name of the class to build
          * @return Any class found in the type cache
@@ -191,15 +239,7 @@ public interface JavaType extends Serializable {
                     members.stream().sorted(comparing(Var::getName)).collect(toList()),
                     typeParameters, interfaces, constructors, supertype);
 
-            synchronized (flyweights) {
-                Set<JavaType.Class> variants = flyweights.computeIfAbsent(fullyQualifiedName, fqn -> HashObjSets.newMutableSet());
-                return (!relaxedClassTypeMatching ? variants.stream().filter(v -> v.deepEquals(test)) : variants.stream())
-                        .findAny()
-                        .orElseGet(() -> {
-                            variants.add(test);
-                            return test;
-                        });
-            }
+            return TypeCache.current().classes.intern(fullyQualifiedName, test, relaxedClassTypeMatching);
         }
 
         /**
@@ -214,31 +254,58 @@ public interface JavaType extends Serializable {
                 return constructors;
             }
 
-            synchronized (flyweights) {
-                List<Method> reflectedConstructors = new ArrayList<>();
-                try {
-                    java.lang.Class<?> reflectionClass = java.lang.Class.forName(fullyQualifiedName, false, JavaType.class.getClassLoader());
-                    for (Constructor<?> constructor : reflectionClass.getConstructors()) {
-                        ShallowClass selfType = new ShallowClass(fullyQualifiedName);
-
-                        // TODO can we generate a generic signature as well?
-                        Method.Signature resolvedSignature = new Method.Signature(selfType, Arrays.stream(constructor.getParameterTypes())
-                                .map(pt -> Class.build(pt.getName()))
-                                .collect(toList()));
-
-                        List<String> parameterNames = Arrays.stream(constructor.getParameters()).map(Parameter::getName).collect(toList());
-
-                        // Name each constructor "<reflection_constructor>" to intentionally disambiguate from method signatures parsed
-                        // by JavaParser, which may have richer information but which would only be available for types found in the source
-                        // repository.
-                        reflectedConstructors.add(Method.build(selfType, "<reflection_constructor>", resolvedSignature, resolvedSignature,
-                                parameterNames, singleton(Flag.Public)));
+            List<Method> reflectedConstructors = new ArrayList<>();
+            try {
+                java.lang.Class<?> reflectionClass = java.lang.Class.forName(fullyQualifiedName, false, JavaType.class.getClassLoader());
+                for (Constructor<?> constructor : reflectionClass.getConstructors()) {
+                    ShallowClass selfType = new ShallowClass(fullyQualifiedName);
+
+                    // TODO can we generate a generic signature as well?
+                    Method.Signature resolvedSignature = new Method.Signature(selfType, Arrays.stream(constructor.getParameterTypes())
+                            .map(pt -> Class.build(pt.getName()))
+                            .collect(toList()));
+
+                    List<String> parameterNames = Arrays.stream(constructor.getParameters()).map(Parameter::getName).collect(toList());
+
+                    // Name each constructor "<reflection_constructor>" to intentionally disambiguate from method signatures parsed
+                    // by JavaParser, which may have richer information but which would only be available for types found in the source
+                    // repository.
+                    reflectedConstructors.add(Method.build(selfType, "<reflection_constructor>", resolvedSignature, resolvedSignature,
+                            parameterNames, singleton(Flag.Public)));
+                }
+            } catch (ClassNotFoundException ignored) {
+                // oh well, we tried
+            }
+            return reflectedConstructors;
+        }
+
+        /**
+         * Computed once per class type, so assignability checks don't have to walk the type hierarchy again.
+         *
+         * @return The fully qualified names of this class and, transitively, all of its supertypes and interfaces.
+         * When the type attribution didn't provide any supertype or interface at all, as for a class type that was
+         * built only from its name, they are filled in from the runtime classpath where possible.
+         */
+        @JsonIgnore
+        public Set<String> getSupertypeClosure() {
+            Set<String> closure = supertypeClosure;
+            if (closure == null) {
+                Set<String> names = new HashSet<>();
+                names.add(fullyQualifiedName);
+                if (supertype != null) {
+                    names.addAll(supertype.getSupertypeClosure());
+                }
+                for (JavaType anInterface : interfaces) {
+                    if (anInterface instanceof Class) {
+                        names.addAll(((Class) anInterface).getSupertypeClosure());
                     }
-                } catch (ClassNotFoundException ignored) {
-                    // oh well, we tried
                 }
-                return reflectedConstructors;
+                if (supertype == null && interfaces.isEmpty() && !"java.lang.Object".equals(fullyQualifiedName)) {
+                    names.addAll(TypeCache.current().reflectedSupertypes(fullyQualifiedName));
+                }
+                supertypeClosure = closure = Collections.unmodifiableSet(names);
             }
+            return closure;
         }
 
         @JsonIgnore
@@ -310,8 +377,6 @@ public interface JavaType extends Serializable {
 
     @Getter
     class Method implements JavaType {
-        private static final Map<FullyQualified, Map<String, Set<Method>>> flyweights = HashObjObjMaps.newMutableMap();
-
         @With
         private final FullyQualified declaringType;
 
@@ -340,20 +405,44 @@ public interface JavaType extends Serializable {
                                    @JsonProperty("paramNames") List<String> paramNames,
                                    @JsonProperty("flags") Set<Flag> flags) {
             Method test = new Method(declaringType, name, genericSignature, resolvedSignature, paramNames, flags);
+            return TypeCache.current().methods.intern(test.signatureKey(), test);
+        }
+
+        /**
+         * A canonical key that is cheap to compute and hash, so that interning only has to fall back to
+         * {@link #deepEquals(JavaType)} among the few variants that share a declaring type, name, and signature.
+         */
+        private String signatureKey() {
+            Signature signature = resolvedSignature == null ? genericSignature : resolvedSignature;
+
+            StringBuilder key = new StringBuilder(declaringType == null ? "" : declaringType.getFullyQualifiedName())
+                    .append(' ')
+                    .append(name)
+                    .append('(');
+
+            if (signature != null) {
+                List<JavaType> paramTypes = signature.getParamTypes();
+                for (int i = 0; i < paramTypes.size(); i++) {
+                    if (i > 0) {
+                        key.append(',');
+                    }
+                    appendKey(key, paramTypes.get(i));
+                }
+            }
+
+            return key.append(')').toString();
+        }
 
-            synchronized (flyweights) {
-                Set<Method> methods = flyweights
-                        .computeIfAbsent(declaringType, dt -> HashObjObjMaps.newMutableMap())
-                        .computeIfAbsent(name, n -> HashObjSets.newMutableSet());
-
-                return methods
-                        .stream()
-                        .filter(m -> m.deepEquals(test))
-                        .findAny()
-                        .orElseGet(() -> {
-                            methods.add(test);
-                            return test;
-                        });
+        private static void appendKey(StringBuilder key, @Nullable JavaType type) {
+            if (type instanceof FullyQualified) {
+                key.append(((FullyQualified) type).getFullyQualifiedName());
+            } else if (type instanceof Primitive) {
+                key.append(((Primitive) type).getKeyword());
+            } else if (type instanceof Array) {
+                appendKey(key, ((Array) type).getElemType());
+                key.append("[]");
+            } else if (type != null) {
+                key.append(type.getClass().getSimpleName());
             }
         }
 
@@ -26,32 +26,60 @@ import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
 import org.openrewrite.Metadata;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.UncheckedIOException;
+import java.io.*;
 import java.lang.reflect.InvocationTargetException;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Writes Java ASTs in a compact binary format and reads them back, interning their types, identifiers, and formatting
+ * in a {@link TypeCache}. Trees that were written in the Smile format of earlier versions can still be read.
+ */
 public class TreeSerializer {
     private final TypeReference<List<J.CompilationUnit>> cuListType = new TypeReference<List<J.CompilationUnit>>() {
     };
 
-    private final ObjectMapper mapper;
+    private final ObjectMapper smileMapper;
 
     private final SimpleModule metadataModule;
 
+    private final TypeCache typeCache;
+
+    private final boolean lazyBodies;
+
     public TreeSerializer() {
+        this(TypeCache.global());
+    }
+
+    /**
+     * @param typeCache The cache that will own the types, identifiers, and formatting of deserialized trees.
+     */
+    public TreeSerializer(TypeCache typeCache) {
+        this(typeCache, false);
+    }
+
+    /**
+     * @param typeCache  The cache that will own the types, identifiers, and formatting of deserialized trees.
+     * @param lazyBodies When true, the statements of class and method bodies are only decoded when they are first
+     *                   asked for (e.g. by a visitor that visits them), so a tree that is only inspected down to its
+     *                   imports and declarations is read without decoding most of it.
+     */
+    public TreeSerializer(TypeCache typeCache, boolean lazyBodies) {
+        this.typeCache = typeCache;
+        this.lazyBodies = lazyBodies;
         this.metadataModule = new SimpleModule();
         metadataModule.addKeySerializer(Metadata.class, new MetadataKeySerializer());
         metadataModule.addKeyDeserializer(Metadata.class, new MetadataKeyDeserializer());
 
         SmileFactory f = new SmileFactory();
         f.configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true);
-        this.mapper = new ObjectMapper(f)
+        this.smileMapper = new ObjectMapper(f)
                 .registerModule(metadataModule)
                 .setSerializationInclusion(JsonInclude.Include.NON_NULL);
     }
@@ -68,67 +96,184 @@ public class TreeSerializer {
         }
     }
 
-    public void write(List<J.CompilationUnit> cus, OutputStream out) {
+    /**
+     * @param out The stream to write compilation units to. It is closed when the returned writer is closed.
+     * @return A writer that appends compilation units to the stream one at a time, so they don't all have to be
+     * held in memory at once. Types are shared by every compilation unit written to the same stream.
+     */
+    public Writer writer(OutputStream out) {
         try {
-            mapper.writeValue(out, cus);
+            return new Writer(new BinaryTreeFormat.Writer(out), out);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    public byte[] write(List<J.CompilationUnit> cus) {
+    public void write(List<J.CompilationUnit> cus, OutputStream out) {
         try {
-            return mapper.writeValueAsBytes(cus);
-        } catch (JsonProcessingException e) {
+            BinaryTreeFormat.Writer writer = new BinaryTreeFormat.Writer(out);
+            for (J.CompilationUnit cu : cus) {
+                writer.write(cu);
+            }
+            writer.finish();
+        } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
+    public byte[] write(List<J.CompilationUnit> cus) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(cus, out);
+        return out.toByteArray();
+    }
+
     public void write(J.CompilationUnit cu, OutputStream out) {
-        try {
-            mapper.writeValue(out, cu);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        write(singletonList(cu), out);
     }
 
     public byte[] write(J.CompilationUnit cu) {
-        try {
-            return mapper.writeValueAsBytes(cu);
-        } catch (JsonProcessingException e) {
-            throw new UncheckedIOException(e);
-        }
+        return write(singletonList(cu));
+    }
+
+    /**
+     * @param input A stream of compilation units, e.g. one written by {@link #writer(OutputStream)}. It is closed
+     *              when the returned stream is closed.
+     * @return The compilation units, each of which is only read when the stream gets to it.
+     */
+    public Stream<J.CompilationUnit> stream(InputStream input) {
+        Iterator<J.CompilationUnit> cus = typeCache.run(() -> {
+            try {
+                PushbackInputStream in = new PushbackInputStream(input, BinaryTreeFormat.MAGIC.length);
+                if (!isBinary(in)) {
+                    return smileMapper.<List<J.CompilationUnit>>readValue(in, cuListType).iterator();
+                }
+                return new ReaderIterator(new BinaryTreeFormat.Reader(in, lazyBodies));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cus, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(() -> {
+                    try {
+                        input.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
     }
 
     public List<J.CompilationUnit> readList(InputStream input) {
-        try {
-            return mapper.readValue(input, cuListType);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        return stream(input).collect(toList());
     }
 
     public List<J.CompilationUnit> readList(byte[] bytes) {
-        try {
-            return mapper.readValue(bytes, cuListType);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        return readList(new ByteArrayInputStream(bytes));
     }
 
     public J.CompilationUnit read(InputStream input) {
-        try {
-            return mapper.readValue(input, J.CompilationUnit.class);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
-        }
+        return typeCache.run(() -> {
+            try {
+                PushbackInputStream in = new PushbackInputStream(input, BinaryTreeFormat.MAGIC.length);
+                if (!isBinary(in)) {
+                    return smileMapper.readValue(in, J.CompilationUnit.class);
+                }
+                return (J.CompilationUnit) new BinaryTreeFormat.Reader(in, lazyBodies).read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     public J.CompilationUnit read(byte[] bytes) {
-        try {
-            return mapper.readValue(bytes, J.CompilationUnit.class);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+        return read(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Trees written before the binary format existed are Smile encoded, and can still be read.
+     */
+    private static boolean isBinary(PushbackInputStream in) throws IOException {
+        byte[] header = new byte[BinaryTreeFormat.MAGIC.length];
+        int length = 0;
+        while (length < header.length) {
+            int n = in.read(header, length, header.length - length);
+            if (n < 0) {
+                break;
+            }
+            length += n;
+        }
+        in.unread(header, 0, length);
+        return BinaryTreeFormat.hasMagic(header, length);
+    }
+
+    /**
+     * Appends compilation units to a stream. Closing the writer ends the stream.
+     */
+    public static class Writer implements Closeable {
+        private final BinaryTreeFormat.Writer writer;
+        private final OutputStream out;
+
+        private Writer(BinaryTreeFormat.Writer writer, OutputStream out) {
+            this.writer = writer;
+            this.out = out;
+        }
+
+        public Writer write(J.CompilationUnit cu) {
+            try {
+                writer.write(cu);
+                return this;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public void flush() {
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                writer.finish();
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private class ReaderIterator implements Iterator<J.CompilationUnit> {
+        private final BinaryTreeFormat.Reader reader;
+
+        ReaderIterator(BinaryTreeFormat.Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                return reader.hasNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public J.CompilationUnit next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return typeCache.run(() -> {
+                try {
+                    return (J.CompilationUnit) reader.read();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
         }
     }
 
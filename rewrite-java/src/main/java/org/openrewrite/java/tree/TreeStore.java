@@ -0,0 +1,343 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.tree;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * Serialized compilation units of a repository in a single file, from which any one of them can be read by its source
+ * path without reading the others. Useful when only a handful of source files out of a large repository are needed,
+ * e.g. the ones an {@link org.openrewrite.InvertedIndex} picks out.
+ * <p>
+ * Each compilation unit is written as a complete stream of its own in the binary format of {@link TreeSerializer},
+ * so compilation units can be read in any order, and by any number of threads at once. The file is memory-mapped for
+ * reading, so only the pages of the compilation units that are actually read are touched.
+ * <p>
+ * The file is laid out as:
+ * <pre>
+ * header   magic, version
+ * entries  a serialized compilation unit per source path
+ * index    entry count, then (length, UTF-8 bytes of the source path, offset, length) per entry, sorted by source path
+ * trailer  offset of the index, version, magic
+ * </pre>
+ */
+public class TreeStore implements Closeable {
+    private static final int MAGIC = 0x52575453;
+    private static final int VERSION = 1;
+    private static final int TRAILER_SIZE = Long.BYTES + 2 * Integer.BYTES;
+
+    private final Path path;
+    private final TypeCache typeCache;
+    private final boolean lazyBodies;
+    private final FileChannel channel;
+
+    /**
+     * The whole file when it can be mapped at once, otherwise null and each entry is mapped when it is read.
+     * Only ever read through duplicates, so that any number of threads can share it.
+     */
+    @Nullable
+    private final ByteBuffer buffer;
+
+    private final Map<String, Entry> entries;
+
+    private TreeStore(Path path, TypeCache typeCache, boolean lazyBodies, FileChannel channel, @Nullable ByteBuffer buffer,
+                      Map<String, Entry> entries) {
+        this.path = path;
+        this.typeCache = typeCache;
+        this.lazyBodies = lazyBodies;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    public static TreeStore open(Path path) {
+        return open(path, TypeCache.global());
+    }
+
+    public static TreeStore open(Path path, TypeCache typeCache) {
+        return open(path, typeCache, false);
+    }
+
+    /**
+     * @param path       A store written by {@link #write(Path, Iterable)}.
+     * @param typeCache  The cache that will own the types, identifiers, and formatting of the compilation units read.
+     * @param lazyBodies When true, the statements of class and method bodies are only decoded when they are first
+     *                   asked for.
+     * @return The store, whose index of source paths has been read, but none of whose compilation units have.
+     */
+    public static TreeStore open(Path path, TypeCache typeCache, boolean lazyBodies) {
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            long size = channel.size();
+
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            if (size < 2 * Integer.BYTES + TRAILER_SIZE || !readFully(channel, trailer, size - TRAILER_SIZE) ||
+                    trailer.getInt(Long.BYTES + Integer.BYTES) != MAGIC) {
+                throw new IllegalStateException(path + " is not a tree store");
+            }
+            if (trailer.getInt(Long.BYTES) != VERSION) {
+                throw new IllegalStateException(path + " is a tree store of unsupported version " + trailer.getInt(Long.BYTES));
+            }
+
+            long indexStart = trailer.getLong(0);
+            ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, indexStart, size - TRAILER_SIZE - indexStart);
+            int count = index.getInt();
+            Map<String, Entry> entries = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+                byte[] sourcePath = new byte[index.getInt()];
+                index.get(sourcePath);
+                entries.put(new String(sourcePath, StandardCharsets.UTF_8), new Entry(index.getLong(), index.getInt()));
+            }
+
+            // the mapping stays valid after the channel is closed
+            ByteBuffer buffer = size <= Integer.MAX_VALUE ?
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, size) :
+                    null;
+
+            return new TreeStore(path, typeCache, lazyBodies, channel, buffer, entries);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the store to a temporary file next to the destination and then moves it into place, so that
+     * anybody who already has the previous store open can keep using it.
+     *
+     * @param path The destination.
+     * @param cus  The compilation units to store, which don't all have to be in memory at once.
+     * @return The newly written store.
+     */
+    public static TreeStore write(Path path, Iterable<J.CompilationUnit> cus) {
+        return write(path, cus, TypeCache.global());
+    }
+
+    public static TreeStore write(Path path, Iterable<J.CompilationUnit> cus, TypeCache typeCache) {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+
+            try (CountingOutputStream counting = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+                 DataOutputStream out = new DataOutputStream(counting)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                Map<String, Entry> entries = new TreeMap<>();
+                for (J.CompilationUnit cu : cus) {
+                    long offset = counting.getCount();
+                    BinaryTreeFormat.Writer writer = new BinaryTreeFormat.Writer(out);
+                    writer.write(cu);
+                    writer.finish();
+
+                    Entry entry = new Entry(offset, (int) (counting.getCount() - offset));
+                    if (entries.put(cu.getSourcePath(), entry) != null) {
+                        throw new IllegalArgumentException("More than one compilation unit has the source path " +
+                                cu.getSourcePath());
+                    }
+                }
+
+                long indexStart = counting.getCount();
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    byte[] sourcePath = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(sourcePath.length);
+                    out.write(sourcePath);
+                    out.writeLong(entry.getValue().offset);
+                    out.writeInt(entry.getValue().length);
+                }
+
+                out.writeLong(indexStart);
+                out.writeInt(VERSION);
+                out.writeInt(MAGIC);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(temp);
+                throw e;
+            }
+
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return open(path, typeCache);
+    }
+
+    public Set<String> getSourcePaths() {
+        return unmodifiableSet(entries.keySet());
+    }
+
+    public boolean contains(String sourcePath) {
+        return entries.containsKey(sourcePath);
+    }
+
+    /**
+     * Safe to call from any number of threads at once.
+     *
+     * @param sourcePath The source path of a compilation unit.
+     * @return The compilation unit, or null if the store doesn't have one with this source path.
+     */
+    @Nullable
+    public J.CompilationUnit read(String sourcePath) {
+        Entry entry = entries.get(sourcePath);
+        if (entry == null) {
+            return null;
+        }
+
+        return typeCache.run(() -> {
+            try {
+                return (J.CompilationUnit) new BinaryTreeFormat.Reader(new ByteBufferInputStream(slice(entry)), lazyBodies).read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(path + " has a corrupt entry for " + sourcePath, e);
+            }
+        });
+    }
+
+    /**
+     * @param sourcePaths Source paths, some of which may not be in the store.
+     * @return The compilation units with those source paths that are in the store.
+     */
+    public List<J.CompilationUnit> read(Collection<String> sourcePaths) {
+        List<J.CompilationUnit> cus = new ArrayList<>(sourcePaths.size());
+        for (String sourcePath : sourcePaths) {
+            J.CompilationUnit cu = read(sourcePath);
+            if (cu != null) {
+                cus.add(cu);
+            }
+        }
+        return cus;
+    }
+
+    private ByteBuffer slice(Entry entry) throws IOException {
+        if (buffer != null) {
+            ByteBuffer slice = buffer.duplicate();
+            slice.position((int) entry.offset).limit((int) entry.offset + entry.length);
+            return slice.slice();
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, entry.offset, entry.length);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+                // already failing for another reason
+            }
+        }
+    }
+
+    private static class Entry {
+        private final long offset;
+        private final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
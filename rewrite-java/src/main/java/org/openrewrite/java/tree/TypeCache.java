@@ -0,0 +1,262 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.tree;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.openrewrite.Formatting;
+import org.openrewrite.internal.Interner;
+import org.openrewrite.internal.ValueInterner;
+import org.openrewrite.internal.lang.Nullable;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import static java.util.Collections.emptySet;
+
+/**
+ * Owns the flyweight tables for class types, method types, identifiers, and formatting that are built while parsing,
+ * deserializing, or refactoring Java source.
+ * <p>
+ * By default, everything shares the process-wide {@link #global()} cache. A long-lived process that works on one
+ * repository after another can instead give each repository its own cache (e.g. through
+ * {@link org.openrewrite.java.JavaParser.Builder#typeCache(TypeCache)}) so that types from unrelated repositories
+ * neither accumulate forever nor satisfy each other's relaxed class type matching.
+ * <p>
+ * Types are compared by identity in places, so a tree's types are only interchangeable with those of another tree
+ * when both were built in the same cache. Parse, deserialize, and refactor a tree with the same cache bound, e.g. with
+ * {@link J.CompilationUnit#refactor(TypeCache)}. Work that runs outside of {@link #run(Supplier)} interns
+ * into the {@link #global()} cache.
+ */
+public class TypeCache implements MeterBinder {
+    private static final TypeCache GLOBAL = new TypeCache("global", 0, true);
+    private static final ThreadLocal<TypeCache> current = new ThreadLocal<>();
+
+    private final String name;
+    private final long maxEntries;
+
+    // there shouldn't be too many distinct types represented by the same fully qualified name
+    final Interner<JavaType.Class> classes;
+
+    final Interner<JavaType.Method> methods;
+
+    final ValueInterner<J.Ident.IdentFlyweight> idents;
+
+    private final Formatting.Flyweights formatting = new Formatting.Flyweights();
+
+    private final ConcurrentMap<String, Set<String>> reflectedSupertypes = new ConcurrentHashMap<>();
+
+    public TypeCache(String name) {
+        this(name, 0);
+    }
+
+    public TypeCache(String name, long maxEntries) {
+        this(name, maxEntries, true);
+    }
+
+    /**
+     * @param name        A name used to tag metrics emitted for this cache.
+     * @param maxEntries  When greater than zero, class and method types are only held as long as some tree still
+     *                    refers to them, and the tables that are only used to deduplicate values (formatting, and
+     *                    identifiers if they are held strongly) are emptied at the end of any unit of work run
+     *                    through {@link #run(Supplier)} that leaves the cache holding more than this many entries.
+     *                    Types that are still in use are never evicted, so trees built before and after an eviction
+     *                    keep sharing them.
+     * @param weakIdents  When true, identifiers that are no longer referenced by any tree are dropped from the cache
+     *                    by the garbage collector. Identifiers are the most common node in a Java AST, so this
+     *                    keeps the identifier table proportional to the trees that are still alive.
+     */
+    public TypeCache(String name, long maxEntries, boolean weakIdents) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.classes = new Interner<>(name + " class types", JavaType.Class::deepEquals, maxEntries > 0);
+        this.methods = new Interner<>(name + " method types", JavaType.Method::deepEquals, maxEntries > 0);
+        this.idents = weakIdents ? ValueInterner.weak(name + " identifiers") : ValueInterner.strong(name + " identifiers");
+        seed();
+    }
+
+    public static TypeCache global() {
+        return GLOBAL;
+    }
+
+    /**
+     * @return The cache bound to the current thread by {@link #run(Supplier)}, or the global cache.
+     */
+    public static TypeCache current() {
+        TypeCache typeCache = current.get();
+        return typeCache == null ? GLOBAL : typeCache;
+    }
+
+    /**
+     * Runs a unit of work with this cache (and its formatting table) bound to the current thread, so that any types,
+     * identifiers, and formatting built by the work are interned here.
+     */
+    public <T> T run(Supplier<T> work) {
+        TypeCache previous = current.get();
+        Formatting.Flyweights previousFormatting = Formatting.Flyweights.bind(formatting);
+        current.set(this);
+
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+            Formatting.Flyweights.bind(previousFormatting);
+
+            if (previous != this && maxEntries > 0 && size() > maxEntries) {
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Binds a cache to the current thread for work that can't be wrapped in a single {@link #run(Supplier)}, such as
+     * the lifetime of a worker thread. Unlike {@code run}, this never evicts anything.
+     *
+     * @param typeCache The cache to bind, or null to revert to the global cache.
+     * @return The cache that was previously bound to this thread, or null if none was.
+     */
+    @Nullable
+    public static TypeCache bind(@Nullable TypeCache typeCache) {
+        TypeCache previous = current.get();
+        if (typeCache == null) {
+            current.remove();
+            Formatting.Flyweights.bind(null);
+        } else {
+            current.set(typeCache);
+            Formatting.Flyweights.bind(typeCache.formatting);
+        }
+        return previous;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getClassCount() {
+        return classes.size();
+    }
+
+    public long getMethodCount() {
+        return methods.size();
+    }
+
+    public long getIdentCount() {
+        return idents.size();
+    }
+
+    public long getFormattingCount() {
+        return formatting.size();
+    }
+
+    /**
+     * @return The total number of entries across all of this cache's tables.
+     */
+    public long size() {
+        return getClassCount() + getMethodCount() + getIdentCount() + getFormattingCount();
+    }
+
+    /**
+     * Empties the tables whose entries are compared by value rather than identity. Class and method types are held
+     * weakly by a bounded cache, and leave it on their own once no tree refers to them any longer.
+     */
+    private void evict() {
+        formatting.clear();
+        reflectedSupertypes.clear();
+        if (!idents.isWeak()) {
+            idents.clear();
+        }
+    }
+
+    /**
+     * Drops every entry. Trees built before a clear keep their types, but they are no longer the same instances
+     * that trees built after it get, so only clear a cache that no live tree was built in.
+     */
+    public void clear() {
+        classes.clear();
+        methods.clear();
+        idents.clear();
+        formatting.clear();
+        reflectedSupertypes.clear();
+        seed();
+    }
+
+    /**
+     * @return The binary names of all supertypes and interfaces of a class found on the runtime classpath, or
+     * an empty set if the class can't be loaded. Remembered per fully qualified name, including misses.
+     */
+    Set<String> reflectedSupertypes(String fullyQualifiedName) {
+        Set<String> supertypes = reflectedSupertypes.get(fullyQualifiedName);
+        if (supertypes == null) {
+            // not computeIfAbsent, since loading a class can take a while and we don't want to block the bin
+            supertypes = reflectSupertypes(fullyQualifiedName);
+            Set<String> existing = reflectedSupertypes.putIfAbsent(fullyQualifiedName, supertypes);
+            if (existing != null) {
+                supertypes = existing;
+            }
+        }
+        return supertypes;
+    }
+
+    private static Set<String> reflectSupertypes(String fullyQualifiedName) {
+        try {
+            Class<?> clazz = Class.forName(fullyQualifiedName, false, TypeCache.class.getClassLoader());
+            Set<String> supertypes = new HashSet<>();
+            collectSupertypes(clazz, supertypes);
+            return supertypes;
+        } catch (ClassNotFoundException | LinkageError ignored) {
+            return emptySet();
+        }
+    }
+
+    private static void collectSupertypes(Class<?> clazz, Set<String> supertypes) {
+        Class<?> superclass = clazz.getSuperclass();
+        if (superclass != null && supertypes.add(superclass.getName())) {
+            collectSupertypes(superclass, supertypes);
+        }
+        for (Class<?> anInterface : clazz.getInterfaces()) {
+            if (supertypes.add(anInterface.getName())) {
+                collectSupertypes(anInterface, supertypes);
+            }
+        }
+    }
+
+    /**
+     * Callers compare against {@link JavaType.Class#OBJECT} by identity, so every cache has to hand it out.
+     */
+    private void seed() {
+        classes.intern(JavaType.Class.OBJECT.getFullyQualifiedName(), JavaType.Class.OBJECT);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        classes.bindTo(registry);
+        methods.bindTo(registry);
+        idents.bindTo(registry);
+
+        Gauge.builder("rewrite.intern.size", this, TypeCache::getFormattingCount)
+                .description("The number of distinct variants held in the table")
+                .tag("table", name + " formatting")
+                .register(registry);
+    }
+}
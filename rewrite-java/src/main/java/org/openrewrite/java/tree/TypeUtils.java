@@ -17,7 +17,6 @@ package org.openrewrite.java.tree;
 
 import org.openrewrite.internal.lang.Nullable;
 
-import java.util.Arrays;
 import java.util.List;
 
 import static java.util.Collections.emptyList;
@@ -52,21 +51,7 @@ public class TypeUtils {
             return false;
         }
 
-        if (classTo.getFullyQualifiedName().equals(classFrom.getFullyQualifiedName()) ||
-                isAssignableTo(to, classFrom.getSupertype()) ||
-                classFrom.getInterfaces().stream().anyMatch(i -> isAssignableTo(to, i))) {
-            return true;
-        }
-
-        try {
-            Class<?> classFromReflect = Class.forName(classFrom.getFullyQualifiedName(), false, TypeUtils.class.getClassLoader());
-            if(classFromReflect.getSuperclass() != null && isAssignableTo(to, JavaType.Class.build(classFromReflect.getSuperclass().getName()))) {
-                return true;
-            }
-            return Arrays.stream(classFromReflect.getInterfaces()).anyMatch(i -> isAssignableTo(to, JavaType.Class.build(i.getName())));
-        } catch (ClassNotFoundException ignored) {
-            return false;
-        }
+        return classFrom.getSupertypeClosure().contains(classTo.getFullyQualifiedName());
     }
 
     @Nullable
@@ -9,4 +9,6 @@ dependencies {
     implementation("org.jetbrains.kotlin:kotlin-stdlib-jdk8")
 
     implementation("org.assertj:assertj-core:latest.release")
+    implementation("com.fasterxml.jackson.core:jackson-databind:latest.release")
+    implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-smile:latest.release")
 }
@@ -152,9 +152,15 @@ abstract class JavaParserCompatibilityKit {
     @Nested
     inner class TreeSerializerTck : TreeSerializerTest
 
+    @Nested
+    inner class TreeStoreTck : TreeStoreTest
+
     @Nested
     inner class TryCatchTck : TryCatchTest
 
+    @Nested
+    inner class TypeCacheTck : TypeCacheTest
+
     @Nested
     inner class TypeCastTck : TypeCastTest
 
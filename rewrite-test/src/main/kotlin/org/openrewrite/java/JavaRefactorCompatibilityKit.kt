@@ -67,6 +67,9 @@ abstract class JavaRefactorCompatibilityKit {
     @Nested
     inner class MethodMatcherTck : MethodMatcherTest
 
+    @Nested
+    inner class MethodMatcherSetTck : MethodMatcherSetTest
+
     @Nested
     inner class OrderImportTck : OrderImportTest
 
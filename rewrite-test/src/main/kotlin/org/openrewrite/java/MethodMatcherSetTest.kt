@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+interface MethodMatcherSetTest {
+    companion object {
+        private val b: String = """
+                class B {
+                   public void singleArg(String s) {}
+                   public void otherArg(String s) {}
+                }
+            """.trimIndent()
+    }
+
+    @Test
+    fun matchingByNameAndWildcard(jp: JavaParser) {
+        val a = jp.parse("""
+            class A {
+               public void test() {
+                   new B().singleArg("boo");
+               }
+            }
+        """.trimIndent(), b)
+
+        val single = MethodMatcher("B singleArg(String)")
+        val other = MethodMatcher("B otherArg(String)")
+        val any = MethodMatcher("B *(..)")
+        val set = MethodMatcherSet().add(single).add(other).add(any)
+
+        val inv = a.classes[0].findMethodCalls("B singleArg(String)").first()
+
+        assertEquals(setOf(single, any), set.matching(inv))
+        assertTrue(single.matches(inv))
+        assertFalse(other.matches(inv))
+    }
+
+    @Test
+    fun visitorsShareMatchers(jp: JavaParser) {
+        val a = jp.parse("""
+            class A {
+               public void test() {
+                   new B().singleArg("boo");
+                   new B().otherArg("boo");
+               }
+            }
+        """.trimIndent(), b)
+
+        val visitors = listOf(
+                ChangeMethodName().apply { setMethod("B singleArg(String)"); setName("first") },
+                ChangeMethodName().apply { setMethod("B otherArg(String)"); setName("second") }
+        )
+
+        assertEquals(2, MethodMatcherSet.share(visitors).size())
+
+        val fixed = a.refactor().visit(visitors).fix().fixed
+
+        assertRefactored(fixed, """
+            class A {
+               public void test() {
+                   new B().first("boo");
+                   new B().second("boo");
+               }
+            }
+        """)
+    }
+}
@@ -15,6 +15,7 @@
  */
 package org.openrewrite.java
 
+import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Assertions.assertFalse
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
@@ -102,4 +103,44 @@ interface MethodMatcherTest {
     fun matchesArrayArguments(jp: JavaParser) {
         assertTrue(argRegex("A foo(String[])").matches("java.lang.String[]"))
     }
-}
\ No newline at end of file
+
+    @Test
+    fun matchesInvocationParameterTypes(jp: JavaParser) {
+        val a = jp.parse("""
+            public class A {
+                void foo(int i, String... s) {}
+                void test() { foo(1, "a", "b"); }
+            }
+        """.trimIndent())
+
+        val foo = a.classes[0].findMethodCalls("A foo(..)").first()
+
+        assertTrue(MethodMatcher("A foo(int, String...)").matches(foo))
+        assertTrue(MethodMatcher("A foo(int, String[])").matches(foo))
+        assertTrue(MethodMatcher("A foo(int, ..)").matches(foo))
+        assertTrue(MethodMatcher("A foo(.., String[])").matches(foo))
+        assertTrue(MethodMatcher("A f*(int, java.lang.*[])").matches(foo))
+        assertTrue(MethodMatcher("Object foo(..)").matches(foo))
+
+        assertFalse(MethodMatcher("A foo(int)").matches(foo))
+        assertFalse(MethodMatcher("A foo(.., int)").matches(foo))
+        assertFalse(MethodMatcher("A bar(..)").matches(foo))
+    }
+
+    @Test
+    fun rememberedMatchesAreConsistent(jp: JavaParser) {
+        val a = jp.parse("""
+            public class A {
+                void foo(int i) {}
+                void test() { foo(1); foo(2); }
+            }
+        """.trimIndent())
+
+        val matcher = MethodMatcher("A foo(int)")
+        val calls = a.classes[0].findMethodCalls("A foo(..)")
+
+        assertEquals(2, calls.size)
+        assertTrue(calls.all { matcher.matches(it) })
+        assertTrue(calls.all { matcher.matches(it) })
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.search
+
+import org.junit.jupiter.api.Assertions.*
+import org.junit.jupiter.api.Test
+import org.openrewrite.InvertedIndex
+import org.openrewrite.java.JavaParser
+
+interface ReferenceIndexTest {
+    @Test
+    fun referencesAndDeclarations(jp: JavaParser) {
+        val a = jp.parse("""
+            import java.util.*;
+            import static java.util.Collections.emptyList;
+            class A {
+               List<String> list = emptyList();
+               void test() {
+                   Collections.singletonList(Collections.emptySet());
+               }
+            }
+        """.trimIndent())
+
+        val index = a.referenceIndex
+
+        assertTrue(index.hasType("java.util.List"))
+        assertTrue(index.hasType("java.util.Collections"))
+        assertFalse(index.hasType("java.util.Set"))
+        assertTrue(index.hasImport("java.util.List"))
+
+        assertEquals(setOf("emptyList"), index.unqualifiedStaticMethodsByType["java.util.Collections"])
+        assertTrue(index.referencedTypesByPackage["java.util"]!!.any { it.fullyQualifiedName == "java.util.List" })
+        assertEquals(setOf("test"), index.declaredMethodsByType["A"])
+        assertEquals(setOf("A"), index.declaredTypes.map { it.fullyQualifiedName }.toSet())
+        assertEquals(3, index.invokedMethods.size)
+    }
+
+    @Test
+    fun nestedMatchingInvocationsAreNotReportedTwice(jp: JavaParser) {
+        val a = jp.parse("""
+            import java.util.*;
+            class A {
+               Object o = Collections.singletonList(Collections.singletonList(1));
+            }
+        """.trimIndent())
+
+        assertEquals(1, a.findMethodCalls("java.util.Collections singletonList(..)").size)
+        assertEquals(FindMethods("java.util.Collections singletonList(..)").visit(a), a.findMethodCalls("java.util.Collections singletonList(..)"))
+    }
+
+    @Test
+    fun indexIsCarriedAcrossImportChanges(jp: JavaParser) {
+        val a = jp.parse("""
+            import java.util.List;
+            class A {
+               List list;
+            }
+        """.trimIndent())
+
+        assertTrue(a.hasImport("java.util.List"))
+
+        val withoutImports = a.withImports(emptyList())
+        assertFalse(withoutImports.hasImport("java.util.List"))
+        assertTrue(withoutImports.hasType("java.util.List"))
+        assertSame(a.referenceIndex.declaredTypes.first(), withoutImports.referenceIndex.declaredTypes.first())
+    }
+
+    @Test
+    fun invertedIndexTerms(jp: JavaParser) {
+        val a = jp.parse("""
+            import java.util.*;
+            class A {
+               @Deprecated
+               Object o = Collections.singletonList(1);
+            }
+        """.trimIndent())
+
+        val terms = a.referenceIndex.terms
+
+        assertTrue(terms.contains(InvertedIndex.Term.type("java.util.Collections")))
+        assertTrue(terms.contains(InvertedIndex.Term.methodName("singletonList")))
+        assertTrue(terms.any { it.kind == InvertedIndex.Term.Kind.Method && it.value.startsWith("java.util.Collections singletonList(") })
+        assertTrue(terms.contains(InvertedIndex.Term.annotation("java.lang.Deprecated")))
+    }
+
+    @Test
+    fun invertedIndexTermsForTypesThatAreNeverNamed(jp: JavaParser) {
+        val a = jp.parse("""
+            import java.util.*;
+            class A {
+               void test() {
+                   Collections.singletonList(1).iterator().forEachRemaining(n -> {});
+               }
+            }
+        """.trimIndent())
+
+        val terms = a.referenceIndex.terms
+
+        assertTrue(terms.contains(InvertedIndex.Term.type("java.util.List")))
+        assertTrue(terms.contains(InvertedIndex.Term.type("java.lang.Integer")))
+    }
+}
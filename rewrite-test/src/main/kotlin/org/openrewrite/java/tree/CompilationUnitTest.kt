@@ -69,4 +69,16 @@ interface CompilationUnitTest {
         
         assertEquals(a.trimIndent(), jp.parse(a).printTrimmed())
     }
-}
\ No newline at end of file
+
+    @Test
+    fun parseInputsWithoutFiles(jp: JavaParser) {
+        val cus = jp.parseInputs(listOf(
+                JavaParser.Input(Paths.get("src/main/java/a/A.java"), "package a; public class A { b.B b; }"),
+                JavaParser.Input(Paths.get("src/main/java/b/B.java"), StringBuilder("package b; public class B {}"))
+        ), null)
+
+        assertEquals(listOf("src/main/java/a/A.java", "src/main/java/b/B.java"), cus.map { it.sourcePath })
+        assertEquals("b.B", TypeUtils.asClass(cus[0].classes[0].fields[0].typeExpr!!.type)?.fullyQualifiedName)
+        assertEquals("package b; public class B {}", cus[1].print())
+    }
+}
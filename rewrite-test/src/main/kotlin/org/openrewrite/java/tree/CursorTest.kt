@@ -85,4 +85,34 @@ interface CursorTest {
             }
         }.visit(a)).isEqualTo(1)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun cursorIndex(jp: JavaParser) {
+        val a = jp.parse("""
+            public class A {
+                public void foo(int n) {
+                    if(n > 0) {
+                        n--;
+                    }
+                }
+            }
+        """.trimIndent())
+
+        val method = a.classes[0].methods[0]
+        val ifStatement = method.body!!.statements[0] as J.If
+        val index = a.cursorIndex
+
+        assertThat(a.cursorIndex).isSameAs(index)
+        assertThat(index.cursor(a)!!.getTree<J.CompilationUnit>()).isSameAs(a)
+        assertThat(index.cursor(ifStatement)).isEqualTo(RetrieveCursor(ifStatement).visit(a))
+        assertThat(index.cursor(ifStatement)!!.parentOrThrow.getTree<Tree>()).isSameAs(method.body)
+        assertThat(index.cursor(ifStatement.id)).isSameAs(index.cursor(ifStatement))
+        assertThat(ifStatement.compactId).isEqualTo(ifStatement.id.leastSignificantBits)
+
+        assertTrue(index.isInScope(ifStatement.condition, method))
+        assertFalse(index.isInScope(method, ifStatement))
+
+        val changed = a.withClasses(emptyList())
+        assertThat(changed.cursorIndex.contains(method)).isFalse()
+    }
+}
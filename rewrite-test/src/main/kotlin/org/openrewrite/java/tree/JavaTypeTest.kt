@@ -62,6 +62,30 @@ interface JavaTypeTest {
         assertFalse(listArr.isAssignableFrom(collectionArr))
     }
 
+    @Test
+    fun supertypeClosure(jp: JavaParser) {
+        val a = jp.parse("""
+            public class A extends B implements I {}
+            class B {}
+            interface I {}
+        """.trimIndent())
+
+        val aType = a.classes[0].type.asClass()!!
+        assertThat(aType.supertypeClosure).contains("A", "B", "I", "java.lang.Object")
+        assertTrue(TypeUtils.isAssignableTo(a.classes[1].type, aType))
+        assertTrue(TypeUtils.isAssignableTo(a.classes[2].type, aType))
+        assertFalse(TypeUtils.isAssignableTo(aType, a.classes[1].type))
+    }
+
+    @Test
+    fun assignabilityFallsBackToRuntimeClasspath(jp: JavaParser) {
+        val arrayList = JavaType.Class.build("java.util.ArrayList")
+
+        assertTrue(TypeUtils.isAssignableTo(JavaType.Class.build("java.util.Collection"), arrayList))
+        assertTrue(JavaType.Class.build("java.util.List").isAssignableFrom(arrayList))
+        assertFalse(TypeUtils.isAssignableTo(JavaType.Class.build("java.util.Map"), arrayList))
+    }
+
     @Test
     fun innerClassType(jp: JavaParser) {
         val t = JavaType.Class.build("com.foo.Foo.Bar")
@@ -84,6 +108,19 @@ interface JavaTypeTest {
         assertEquals("", c.packageName)
     }
 
+    @Test
+    fun className(jp: JavaParser) {
+        val t = JavaType.Class.build("com.foo.Foo.Bar")
+        assertEquals("Foo.Bar", t.className)
+        assertEquals("Bar", t.simpleName)
+
+        val c = JavaType.Class.build("A.C")
+        assertEquals("A.C", c.className)
+        assertEquals("C", c.simpleName)
+
+        assertEquals("Object", JavaType.ShallowClass("java.lang.Object").className)
+    }
+
     @Test
     fun selfReferentialTypeIsShared(jp: JavaParser) {
         val a = jp.parse("public class A { A a; }")
@@ -15,11 +15,18 @@
  */
 package org.openrewrite.java.tree
 
+import com.fasterxml.jackson.annotation.JsonInclude
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.dataformat.smile.SmileFactory
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
 import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.Test
 import org.openrewrite.git.GitMetadata
 import org.openrewrite.java.JavaParser
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
 
 /**
  * Test that flyweights survive a serialization/deserialization cycle
@@ -62,4 +69,66 @@ interface TreeSerializerTest {
         val aBytes = serializer.write(listOf(a))
         assertEquals(a, serializer.readList(aBytes)[0])
     }
+
+    @Test
+    fun `round trip serialization of AST list shares tables between compilation units`(jp: JavaParser) {
+        val a = jp.parse(aSource)
+        val b = jp.parse(aSource.replace("class A", "class B"))
+
+        // the second compilation unit refers to the strings, formatting, and types written for the first one
+        assertTrue(serializer.write(listOf(a, b)).size < serializer.write(a).size * 2)
+
+        val (aDeser, bDeser) = serializer.readList(serializer.write(listOf(a, b)))
+        assertEquals(a, aDeser)
+        assertEquals(b, bDeser)
+    }
+
+    @Test
+    fun `binary format is smaller than the smile format it replaced`(jp: JavaParser) {
+        val a = jp.parse(aSource)
+        val b = jp.parse(aSource.replace("class A", "class B"))
+
+        val smileMapper = ObjectMapper(SmileFactory().configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true))
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+
+        assertTrue(serializer.write(listOf(a, b)).size < smileMapper.writeValueAsBytes(listOf(a, b)).size)
+    }
+
+    @Test
+    fun `round trip serialization of empty AST list`() {
+        assertEquals(emptyList<J.CompilationUnit>(), serializer.readList(serializer.write(emptyList())))
+    }
+
+    @Test
+    fun `binary format starts with a versioned header`(jp: JavaParser) {
+        val aBytes = serializer.write(jp.parse(aSource))
+        assertEquals("RWLST", String(aBytes, 0, 5))
+        assertEquals(BinaryTreeFormat.VERSION, aBytes[5].toInt())
+    }
+
+    @Test
+    fun `stream compilation units one at a time`(jp: JavaParser) {
+        val a = jp.parse(aSource)
+        val b = jp.parse(aSource.replace("class A", "class B"))
+
+        val out = ByteArrayOutputStream()
+        serializer.writer(out).use { it.write(a).write(b) }
+
+        val cus = serializer.stream(ByteArrayInputStream(out.toByteArray())).iterator()
+        assertEquals(a, cus.next())
+        assertEquals(b, cus.next())
+        assertFalse(cus.hasNext())
+    }
+
+    @Test
+    fun `lazily deserialized bodies are decoded when visited`(jp: JavaParser) {
+        val a = jp.parse(aSource)
+        val lazySerializer = TreeSerializer(TypeCache.global(), true)
+
+        val aDeser = lazySerializer.read(lazySerializer.write(a))
+        assertEquals(a, aDeser)
+        assertEquals(a.classes[0].type, aDeser.classes[0].type)
+        assertEquals(a.printTrimmed(), aDeser.printTrimmed())
+        assertTrue(a.classes[0].methods[0].type === aDeser.classes[0].methods[0].type)
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.tree
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import org.openrewrite.java.JavaParser
+import java.nio.file.Path
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+interface TreeStoreTest {
+
+    private fun sources(jp: JavaParser) = (0 until 10).map { i ->
+        jp.reset()
+        jp.parse("""
+            package p$i;
+            public class A$i {
+                java.util.List<String> names = new java.util.ArrayList<>();
+            }
+        """.trimIndent())
+    }
+
+    @Test
+    fun readCompilationUnitsBySourcePath(jp: JavaParser, @TempDir tempDir: Path) {
+        val cus = sources(jp)
+
+        TreeStore.write(tempDir.resolve("trees.bin"), cus).use { store ->
+            assertThat(store.sourcePaths).hasSize(10).contains(cus[3].sourcePath)
+            assertThat(store.read(cus[3].sourcePath)).isEqualTo(cus[3])
+            assertThat(store.read("missing.java")).isNull()
+            assertThat(store.read(listOf(cus[7].sourcePath, "missing.java", cus[1].sourcePath)))
+                    .containsExactly(cus[7], cus[1])
+        }
+    }
+
+    @Test
+    fun readCompilationUnitsConcurrently(jp: JavaParser, @TempDir tempDir: Path) {
+        val cus = sources(jp)
+        TreeStore.write(tempDir.resolve("trees.bin"), cus).close()
+
+        TreeStore.open(tempDir.resolve("trees.bin")).use { store ->
+            val executor = Executors.newFixedThreadPool(4)
+            try {
+                val read = executor.invokeAll((0 until 100).map { i ->
+                    Callable { store.read(cus[i % cus.size].sourcePath) }
+                }).map { it.get() }
+
+                read.forEachIndexed { i, cu -> assertThat(cu).isEqualTo(cus[i % cus.size]) }
+            } finally {
+                executor.shutdown()
+            }
+        }
+    }
+
+    @Test
+    fun replaceStore(jp: JavaParser, @TempDir tempDir: Path) {
+        val cus = sources(jp)
+        val path = tempDir.resolve("trees.bin")
+
+        TreeStore.write(path, cus).use { previous ->
+            TreeStore.write(path, cus.take(2)).use { store ->
+                assertThat(store.sourcePaths).containsExactlyInAnyOrder(cus[0].sourcePath, cus[1].sourcePath)
+            }
+
+            // still readable by whoever opened it before it was replaced
+            assertThat(previous.read(cus[9].sourcePath)).isEqualTo(cus[9])
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openrewrite.java.tree
+
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import org.openrewrite.Formatting
+import org.openrewrite.java.JavaParser
+import org.openrewrite.java.JavaRefactorVisitor
+import java.util.function.Supplier
+
+interface TypeCacheTest {
+    @Test
+    fun typesBuiltInAUnitOfWorkAreInternedInItsCache(jp: JavaParser) {
+        val cache = TypeCache("scoped")
+        val scoped = cache.run(Supplier { JavaType.Class.build("com.foo.Scoped") })
+
+        assertThat(JavaType.Class.build("com.foo.Scoped")).isNotSameAs(scoped)
+        assertThat(cache.run(Supplier { JavaType.Class.build("com.foo.Scoped") })).isSameAs(scoped)
+        assertThat(cache.run(Supplier { JavaType.Class.build("java.lang.Object") })).isSameAs(JavaType.Class.OBJECT)
+    }
+
+    @Test
+    fun deserializedTypesAreOwnedByTheirTypeCache(jp: JavaParser) {
+        val bytes = TreeSerializer().write(jp.parse("public class A { String s; }"))
+
+        val cache1 = TypeCache("cache1")
+        val a1 = TreeSerializer(cache1).read(bytes)
+        val a2 = TreeSerializer(TypeCache("cache2")).read(bytes)
+
+        assertThat(a1.classes[0].type).isNotSameAs(a2.classes[0].type)
+        assertThat(TreeSerializer(cache1).read(bytes).classes[0].type).isSameAs(a1.classes[0].type)
+        assertThat(cache1.classCount).isGreaterThan(1)
+        assertThat(cache1.identCount).isGreaterThan(0)
+
+        cache1.clear()
+        assertThat(cache1.classCount).isEqualTo(1)
+    }
+
+    @Test
+    fun evictionKeepsTypesThatAreStillInUse(jp: JavaParser) {
+        val cache = TypeCache("bounded", 10)
+        val types = cache.run(Supplier {
+            (1..20).map { Formatting.format(" ".repeat(it)) }
+            (1..20).map { JavaType.Class.build("com.foo.A$it") }
+        })
+
+        assertThat(cache.formattingCount).isEqualTo(0)
+        assertThat(cache.run(Supplier { JavaType.Class.build("com.foo.A1") })).isSameAs(types[0])
+    }
+
+    @Test
+    fun refactorInTheTypeCacheOfTheParser(jp: JavaParser) {
+        val cache = TypeCache("refactor")
+        val cu = TreeSerializer(cache).read(TreeSerializer().write(jp.parse("public class A {}")))
+
+        val built = mutableListOf<JavaType.Class>()
+        cu.refactor(cache).visit(object : JavaRefactorVisitor() {
+            override fun visitCompilationUnit(cu: J.CompilationUnit): J {
+                built.add(JavaType.Class.build("A"))
+                return super.visitCompilationUnit(cu)
+            }
+        }).fix(1)
+
+        assertThat(built[0]).isSameAs(cu.classes[0].type)
+    }
+}
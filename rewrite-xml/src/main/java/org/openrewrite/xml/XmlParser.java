@@ -43,15 +43,15 @@ public class XmlParser {
     }
 
     public Xml.Document parse(Path sourceFile, @Nullable Path relativeTo) {
+        String source;
         try {
-            XMLParser parser = new XMLParser(new CommonTokenStream(new XMLLexer(
-                    CharStreams.fromPath(sourceFile))));
-
-            return new XmlParserVisitor(relativeTo == null ? sourceFile : relativeTo.relativize(sourceFile),
-                    new String(Files.readAllBytes(sourceFile), StandardCharsets.UTF_8)).visitDocument(parser.document());
+            source = new String(Files.readAllBytes(sourceFile), StandardCharsets.UTF_8);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
+
+        // the lexer and the visitor share the one decoded copy of the file
+        return parseFromString(relativeTo == null ? sourceFile : relativeTo.relativize(sourceFile), source);
     }
 
     public Xml.Document parseFromString(Path sourceFileLocation, String xmlSource) {